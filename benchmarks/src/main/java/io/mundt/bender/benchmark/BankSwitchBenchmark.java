@@ -0,0 +1,50 @@
+package io.mundt.bender.benchmark;
+
+import io.mundt.bender.BankedStorage;
+import io.mundt.bender.PageTableBus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BankSwitchBenchmark {
+    // Whether a page of the switched window is watched, as it is once code on it has been cached or compiled.
+    @Param({"false", "true"})
+    public boolean watched;
+
+    private PageTableBus bus;
+
+    private BankedStorage storage;
+
+    private int bank;
+
+    @Setup
+    public void setUp() {
+        bus = new PageTableBus();
+        storage = new BankedStorage(0x4000, 8);
+        bus.setWriteWatcher((address, length) -> { });
+        bus.mapBank(0x80, storage, 0, true);
+        bus.watchPage(0x80, watched);
+    }
+
+    @Benchmark
+    public void switch16K() {
+        bank = (bank + 1) & 7;
+        bus.mapBank(0x80, storage, bank, true);
+    }
+}
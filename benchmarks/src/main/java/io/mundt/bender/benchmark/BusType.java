@@ -0,0 +1,20 @@
+package io.mundt.bender.benchmark;
+
+import io.mundt.bender.Bus;
+import io.mundt.bender.Memory;
+import io.mundt.bender.OffHeapMemory;
+import io.mundt.bender.PageTableBus;
+
+public enum BusType {
+    MEMORY,
+    OFF_HEAP,
+    PAGE_TABLE;
+
+    public Bus create() {
+        return switch (this) {
+            case MEMORY -> new Memory();
+            case OFF_HEAP -> new OffHeapMemory();
+            case PAGE_TABLE -> new PageTableBus();
+        };
+    }
+}
@@ -0,0 +1,111 @@
+package io.mundt.bender.benchmark;
+
+import io.mundt.bender.CPU;
+import io.mundt.bender.CPU.UnknownOpcodeException;
+import io.mundt.bender.Bus;
+import io.mundt.bender.Metrics;
+import io.mundt.bender.Profiler;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CPUBenchmark {
+    static final int INSTRUCTIONS = 1000;
+
+    // RECOMPILE steps through whole blocks, so compare it with "-p dispatch=RECOMPILE run" only.
+    @Param({"SWITCH", "TABLE", "PREDECODE"})
+    public CPU.Dispatch dispatch;
+
+    @Param
+    public Workload workload;
+
+    @Param({"false"})
+    public boolean lazyFlags;
+
+    // Only has an effect with PREDECODE.
+    @Param({"false"})
+    public boolean fusion;
+
+    @Param({"MEMORY"})
+    public BusType bus;
+
+    // Profiling runs every dispatch one instruction at a time.
+    @Param({"false"})
+    public boolean profile;
+
+    // Metrics are added to once per slice and leave the dispatch as it is.
+    @Param({"false"})
+    public boolean metrics;
+
+    private CPU cpu;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long cycles;
+
+        public long instructions;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            cycles = 0;
+            instructions = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Bus memory = bus.create();
+        workload.assemble(memory, INSTRUCTIONS);
+        cpu = new CPU(memory);
+        cpu.setDispatch(dispatch);
+        cpu.setLazyFlags(lazyFlags);
+        cpu.setFusion(fusion);
+        cpu.setProfiler(profile ? new Profiler() : null);
+        cpu.setMetrics(metrics ? new Metrics() : null);
+        cpu.reset();
+    }
+
+    @Benchmark
+    public int step(Counters counters) throws UnknownOpcodeException {
+        cpu.pc = Workload.PROGRAM_START;
+        cpu.x = cpu.y = (byte) workload.index();
+        int cycles = 0;
+        for (int i = 0; i < INSTRUCTIONS; i++) {
+            cycles += cpu.step();
+        }
+        counters.cycles += cycles;
+        counters.instructions += INSTRUCTIONS;
+        return cycles;
+    }
+
+    @Benchmark
+    public long run(Counters counters) {
+        cpu.pc = Workload.PROGRAM_START;
+        cpu.x = cpu.y = (byte) workload.index();
+        long start = cpu.cycles;
+        cpu.run(Long.MAX_VALUE); // stops at the illegal opcode behind the program
+        long cycles = cpu.cycles - start;
+        counters.cycles += cycles;
+        counters.instructions += INSTRUCTIONS;
+        return cycles;
+    }
+}
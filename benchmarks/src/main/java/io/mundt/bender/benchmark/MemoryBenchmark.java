@@ -0,0 +1,94 @@
+package io.mundt.bender.benchmark;
+
+import io.mundt.bender.CPU;
+import io.mundt.bender.Bus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MemoryBenchmark {
+    static final int ACCESSES = 4096;
+
+    @Param({"MEMORY", "OFF_HEAP"})
+    public BusType bus;
+
+    private Bus memory;
+
+    private CPU cpu;
+
+    @Setup
+    public void setUp() {
+        memory = bus.create();
+        for (int address = 0; address < 0x10000; address++) {
+            memory.writeByte(address, address * 31);
+        }
+        cpu = new CPU(memory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public int readByte() {
+        int sum = 0;
+        for (int address = 0; address < ACCESSES; address++) {
+            sum += memory.readByte(address * 13);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public int readWord() {
+        int sum = 0;
+        for (int address = 0; address < ACCESSES; address++) {
+            sum += memory.readWord(address * 13);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public void writeByte() {
+        for (int address = 0; address < ACCESSES; address++) {
+            memory.writeByte(address * 13, address);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public int fetchByte() {
+        cpu.pc = 0x1000;
+        int sum = 0;
+        for (int i = 0; i < ACCESSES; i++) {
+            sum += cpu.fetchByte();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public int fetchWord() {
+        cpu.pc = 0x1000;
+        int sum = 0;
+        for (int i = 0; i < ACCESSES; i++) {
+            sum += cpu.fetchWord();
+        }
+        return sum;
+    }
+}
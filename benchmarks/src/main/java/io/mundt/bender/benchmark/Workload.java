@@ -0,0 +1,111 @@
+package io.mundt.bender.benchmark;
+
+import io.mundt.bender.Bus;
+
+import java.util.Random;
+
+public enum Workload {
+    MIXED,
+    IMMEDIATE,
+    ZERO_PAGE,
+    ZERO_PAGE_X,
+    ABSOLUTE,
+    ABSOLUTE_X,
+    ABSOLUTE_Y,
+    INDIRECT_X,
+    INDIRECT_Y,
+    PAGE_CROSSING,
+    STACK,
+    COPY;
+
+    public static final int PROGRAM_START = 0x0200;
+
+    static final int DATA_START = 0x4000;
+
+    // opcode, operand bytes, addressing mode: 0 implied, 1 immediate, 2 zero page, 3 absolute, 4 indirect
+    private static final int[][] MIX = {
+            {0xA9, 1, 1}, {0xA5, 1, 2}, {0xB5, 1, 2}, {0xAD, 2, 3}, {0xBD, 2, 3}, {0xB9, 2, 3}, {0xA1, 1, 4},
+            {0xB1, 1, 4}, {0xA2, 1, 1}, {0xA6, 1, 2}, {0xB6, 1, 2}, {0xAE, 2, 3}, {0xBE, 2, 3}, {0xA0, 1, 1},
+            {0xA4, 1, 2}, {0xB4, 1, 2}, {0xAC, 2, 3}, {0xBC, 2, 3}, {0x85, 1, 2}, {0x95, 1, 2}, {0x8D, 2, 3},
+            {0x9D, 2, 3}, {0x99, 2, 3}, {0x86, 1, 2}, {0x96, 1, 2}, {0x8E, 2, 3}, {0x84, 1, 2}, {0x94, 1, 2},
+            {0x8C, 2, 3}, {0xAA, 0, 0}, {0xA8, 0, 0}, {0x8A, 0, 0}, {0x98, 0, 0}, {0xBA, 0, 0}, {0x9A, 0, 0},
+            {0x48, 0, 0}, {0x68, 0, 0}, {0x08, 0, 0}, {0x28, 0, 0}, {0x29, 1, 1}, {0x25, 1, 2}, {0x35, 1, 2},
+            {0x2D, 2, 3}, {0x3D, 2, 3}, {0x39, 2, 3}, {0x21, 1, 4}, {0x31, 1, 4}, {0x49, 1, 1}, {0x45, 1, 2},
+            {0x55, 1, 2}, {0x4D, 2, 3}, {0x5D, 2, 3}, {0x59, 2, 3}, {0x41, 1, 4}, {0x51, 1, 4}, {0x09, 1, 1},
+            {0x05, 1, 2}, {0x15, 1, 2}, {0x0D, 2, 3}, {0x1D, 2, 3}, {0x19, 2, 3}, {0x01, 1, 4}, {0x11, 1, 4},
+    };
+
+    /**
+     * Writes {@code count} instructions of this workload at {@link #PROGRAM_START} and prepares zero page and data
+     * so that every access stays outside the program. Indirect stores are left out of the mix because the pointers
+     * they would go through are themselves overwritten by the zero-page stores.
+     */
+    public void assemble(Bus memory, int count) {
+        for (int address = 0; address < 0x100; address += 2) {
+            memory.writeWord(address, DATA_START + 0xF0);
+        }
+        Random random = new Random(42);
+        for (int address = DATA_START; address < DATA_START + 0x400; address++) {
+            memory.writeByte(address, random.nextInt(0x100));
+        }
+
+        int pc = PROGRAM_START;
+        for (int i = 0; i < count; i++) {
+            switch (this) {
+                case MIXED -> {
+                    int[] instruction = MIX[random.nextInt(MIX.length)];
+                    memory.writeByte(pc, instruction[0]);
+                    int operand = switch (instruction[2]) {
+                        case 1 -> random.nextInt(0x100);
+                        case 2 -> 0x80 + random.nextInt(0x80);
+                        case 3 -> DATA_START + random.nextInt(0x100);
+                        case 4 -> random.nextInt(0x80) * 2;
+                        default -> 0;
+                    };
+                    if (instruction[1] == 1) {
+                        memory.writeByte(pc + 1, operand);
+                    } else if (instruction[1] == 2) {
+                        memory.writeWord(pc + 1, operand);
+                    }
+                    pc += 1 + instruction[1];
+                }
+                case IMMEDIATE -> pc = emit(memory, pc, 0xA9, 1, i & 0xFF);
+                case ZERO_PAGE -> pc = emit(memory, pc, 0xA5, 1, 0x80 + (i & 0x7F));
+                case ZERO_PAGE_X -> pc = emit(memory, pc, 0xB5, 1, 0x80 + (i & 0x7F));
+                case ABSOLUTE -> pc = emit(memory, pc, 0xAD, 2, DATA_START + (i & 0xFF));
+                case ABSOLUTE_X -> pc = emit(memory, pc, 0xBD, 2, DATA_START + (i & 0x3F));
+                case ABSOLUTE_Y -> pc = emit(memory, pc, 0xB9, 2, DATA_START + (i & 0x3F));
+                case INDIRECT_X -> pc = emit(memory, pc, 0xA1, 1, (i & 0x3F) * 2);
+                case INDIRECT_Y -> pc = emit(memory, pc, 0xB1, 1, (i & 0x3F) * 2);
+                case PAGE_CROSSING -> pc = (i & 1) == 0
+                        ? emit(memory, pc, 0xBD, 2, DATA_START + 0xF0 + (i & 0x0F))
+                        : emit(memory, pc, 0xB1, 1, (i & 0x3F) * 2);
+                case STACK -> pc = emit(memory, pc, new int[]{0x48, 0x08, 0x28, 0x68}[i & 3], 0, 0);
+                case COPY -> pc = switch (i & 3) { // pairs that fusion turns into one handler
+                    case 0 -> emit(memory, pc, 0xA5, 1, 0x80 + (i & 0x7F));
+                    case 1 -> emit(memory, pc, 0x8D, 2, DATA_START + 0x200 + (i & 0xFF));
+                    case 2 -> emit(memory, pc, 0xB1, 1, (i & 0x3F) * 2);
+                    default -> emit(memory, pc, 0x91, 1, (i & 0x3F) * 2);
+                };
+            }
+        }
+    }
+
+    /**
+     * Index register values for the workload: small enough to stay in page for the addressing-mode benchmarks,
+     * large enough to cross a page on every access for {@link #PAGE_CROSSING}.
+     */
+    public int index() {
+        return this == PAGE_CROSSING ? 0xFF : 0x10;
+    }
+
+    private static int emit(Bus memory, int pc, int opcode, int operandBytes, int operand) {
+        memory.writeByte(pc, opcode);
+        if (operandBytes == 1) {
+            memory.writeByte(pc + 1, operand);
+        } else if (operandBytes == 2) {
+            memory.writeWord(pc + 1, operand);
+        }
+        return pc + 1 + operandBytes;
+    }
+}
@@ -0,0 +1,52 @@
+package io.mundt.bender;
+
+/**
+ * Storage for bank-switched ROM or RAM, kept as individual pages so a bank can be mapped into a PageTableBus by
+ * pointing its page table at them instead of copying data.
+ */
+public class BankedStorage {
+    private final byte[][] pages;
+
+    private final int pagesPerBank;
+
+    public BankedStorage(int bankSize, int bankCount) {
+        if (bankSize <= 0 || bankSize % PageTableBus.PAGE_SIZE != 0) {
+            throw new IllegalArgumentException("Bank size must be a positive multiple of the page size: " + bankSize);
+        }
+        pagesPerBank = bankSize / PageTableBus.PAGE_SIZE;
+        pages = new byte[Math.multiplyExact(pagesPerBank, bankCount)][PageTableBus.PAGE_SIZE];
+    }
+
+    public int getBankSize() {
+        return pagesPerBank * PageTableBus.PAGE_SIZE;
+    }
+
+    public int getBankCount() {
+        return pages.length / pagesPerBank;
+    }
+
+    public int readByte(int bank, int offset) {
+        return page(bank, offset)[offset & 0xFF] & 0xFF;
+    }
+
+    public void writeByte(int bank, int offset, int value) {
+        page(bank, offset)[offset & 0xFF] = (byte) value;
+    }
+
+    public void load(int bank, byte[] data) {
+        if (data.length > getBankSize()) {
+            throw new IllegalArgumentException("Data does not fit into a bank: " + data.length);
+        }
+        for (int offset = 0; offset < data.length; offset += PageTableBus.PAGE_SIZE) {
+            int length = Math.min(PageTableBus.PAGE_SIZE, data.length - offset);
+            System.arraycopy(data, offset, page(bank, offset), 0, length);
+        }
+    }
+
+    byte[] page(int bank, int offset) {
+        if (bank < 0 || bank >= getBankCount()) {
+            throw new IllegalArgumentException("Bank out of range: " + bank);
+        }
+        return pages[bank * pagesPerBank + offset / PageTableBus.PAGE_SIZE];
+    }
+}
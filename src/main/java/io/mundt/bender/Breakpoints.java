@@ -0,0 +1,235 @@
+package io.mundt.bender;
+
+import java.util.Arrays;
+
+/**
+ * Execute breakpoints and read and write watchpoints, each a set of 64K bits with a summary bit per page, so an
+ * address is only looked up on pages that have one.
+ * <p>
+ * run() reads which kinds are armed at the start of each slice, and arming or disarming the last of a kind ends the
+ * slice, much like invalidating a SwitchPoint. Without execute breakpoints the run loop checks nothing per
+ * instruction; with them, it only looks at the bits on pages whose summary bit is set, and runs the instructions
+ * there one at a time, so no fused pair or compiled block steps over a breakpoint. Watchpoints put a checking bus in
+ * front of the CPU's bus, which is only there while one is armed; with it, instructions run one at a time like when
+ * tracing, so run() stops right after the instruction that accessed the address.
+ * <p>
+ * Reads include the CPU's own opcode and operand fetches, but not those of decoding, compiling and tracing. Not
+ * thread-safe; change it from the thread running the CPU.
+ */
+public final class Breakpoints {
+    public enum Kind {
+        EXECUTE,
+        READ,
+        WRITE
+    }
+
+    private static final int EXECUTE = 0;
+    private static final int READ = 1;
+    private static final int WRITE = 2;
+
+    private final long[][] addresses = new long[3][0x10000 / 64];
+
+    private final int[][] pageCounts = new int[3][0x100];
+
+    // A bit per page with an address set. For EXECUTE also the page before it, as a fused pair starting there can
+    // reach into it.
+    private final long[][] pages = new long[3][0x100 / 64];
+
+    private final int[] counts = new int[3];
+
+    // CPU the breakpoints were last installed on, told when a kind is armed or disarmed.
+    CPU cpu;
+
+    private Kind hitKind;
+
+    private int hitAddress;
+
+    /**
+     * Returns false if the address already had a breakpoint of the kind.
+     */
+    public boolean add(Kind kind, int address) {
+        int index = kind.ordinal();
+        address &= 0xFFFF;
+        if ((addresses[index][address >>> 6] & 1L << address) != 0) {
+            return false;
+        }
+        addresses[index][address >>> 6] |= 1L << address;
+        pageCounts[index][address >>> 8]++;
+        updatePages(index, address >>> 8);
+        if (counts[index]++ == 0 && cpu != null) {
+            cpu.breakpointsChanged();
+        }
+        return true;
+    }
+
+    /**
+     * Returns false if the address had no breakpoint of the kind.
+     */
+    public boolean remove(Kind kind, int address) {
+        int index = kind.ordinal();
+        address &= 0xFFFF;
+        if ((addresses[index][address >>> 6] & 1L << address) == 0) {
+            return false;
+        }
+        addresses[index][address >>> 6] &= ~(1L << address);
+        pageCounts[index][address >>> 8]--;
+        updatePages(index, address >>> 8);
+        if (--counts[index] == 0 && cpu != null) {
+            cpu.breakpointsChanged();
+        }
+        return true;
+    }
+
+    public boolean contains(Kind kind, int address) {
+        return isSet(kind.ordinal(), address & 0xFFFF);
+    }
+
+    public boolean isArmed() {
+        return counts[EXECUTE] != 0 || isWatching();
+    }
+
+    public void clear() {
+        boolean armed = isArmed();
+        for (int index = 0; index < 3; index++) {
+            Arrays.fill(addresses[index], 0);
+            Arrays.fill(pageCounts[index], 0);
+            Arrays.fill(pages[index], 0);
+            counts[index] = 0;
+        }
+        hitKind = null;
+        if (armed && cpu != null) {
+            cpu.breakpointsChanged();
+        }
+    }
+
+    /**
+     * Returns the kind of breakpoint the last run() stopped at, or null if it stopped for another reason.
+     */
+    public Kind getHitKind() {
+        return hitKind;
+    }
+
+    /**
+     * Returns the address of the breakpoint the last run() stopped at: pc for EXECUTE, the accessed address otherwise.
+     */
+    public int getHitAddress() {
+        return hitAddress;
+    }
+
+    boolean isBreaking() {
+        return counts[EXECUTE] != 0;
+    }
+
+    boolean isWatching() {
+        return counts[READ] != 0 || counts[WRITE] != 0;
+    }
+
+    /**
+     * Returns whether an instruction starting at pc may run into an execute breakpoint.
+     */
+    boolean isBreakingOnPage(int pc) {
+        return hasPage(EXECUTE, pc);
+    }
+
+    /**
+     * Records a hit if there is an execute breakpoint at pc.
+     */
+    boolean breaksAt(int pc) {
+        if (!isSet(EXECUTE, pc)) {
+            return false;
+        }
+        hitKind = Kind.EXECUTE;
+        hitAddress = pc;
+        return true;
+    }
+
+    boolean isHit() {
+        return hitKind != null;
+    }
+
+    void clearHit() {
+        hitKind = null;
+    }
+
+    Bus watch(Bus bus) {
+        return new WatchingBus(bus);
+    }
+
+    static Bus unwatched(Bus bus) {
+        return bus instanceof WatchingBus watching ? watching.bus : bus;
+    }
+
+    private boolean isSet(int index, int address) {
+        return (addresses[index][address >>> 6] & 1L << address) != 0;
+    }
+
+    private boolean hasPage(int index, int address) {
+        return (pages[index][address >>> 14] & 1L << (address >>> 8)) != 0;
+    }
+
+    private void updatePages(int index, int page) {
+        updatePage(index, page);
+        if (index == EXECUTE) {
+            updatePage(index, (page - 1) & 0xFF);
+        }
+    }
+
+    private void updatePage(int index, int page) {
+        boolean set = pageCounts[index][page] != 0 || index == EXECUTE && pageCounts[index][(page + 1) & 0xFF] != 0;
+        if (set) {
+            pages[index][page >>> 6] |= 1L << page;
+        } else {
+            pages[index][page >>> 6] &= ~(1L << page);
+        }
+    }
+
+    // Records the hit and ends the slice, so run() stops after the instruction doing the access.
+    private void watched(Kind kind, int address) {
+        hitKind = kind;
+        hitAddress = address;
+        if (cpu != null && cpu.cycles < cpu.deadline) {
+            cpu.deadline = cpu.cycles;
+        }
+    }
+
+    private final class WatchingBus implements Bus {
+        final Bus bus;
+
+        WatchingBus(Bus bus) {
+            this.bus = bus;
+        }
+
+        @Override
+        public int readByte(int address) {
+            address &= 0xFFFF;
+            if (hasPage(READ, address) && isSet(READ, address)) {
+                watched(Kind.READ, address);
+            }
+            return bus.readByte(address);
+        }
+
+        @Override
+        public void writeByte(int address, int value) {
+            address &= 0xFFFF;
+            if (hasPage(WRITE, address) && isSet(WRITE, address)) {
+                watched(Kind.WRITE, address);
+            }
+            bus.writeByte(address, value);
+        }
+
+        @Override
+        public void load(int address, byte[] data, int offset, int length) {
+            bus.load(address, data, offset, length);
+        }
+
+        @Override
+        public boolean setWriteWatcher(WriteWatcher watcher) {
+            return bus.setWriteWatcher(watcher);
+        }
+
+        @Override
+        public void watchPage(int page, boolean watched) {
+            bus.watchPage(page, watched);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.mundt.bender;
+
+public interface Bus {
+    /**
+     * Told about writes to watched pages before the bytes change. A reported range never crosses a page boundary.
+     */
+    @FunctionalInterface
+    interface WriteWatcher {
+        void written(int address, int length);
+    }
+
+    int readByte(int address);
+
+    void writeByte(int address, int value);
+
+    default int readWord(int address) {
+        int low = readByte(address);
+        int high = readByte(address + 1);
+        return (high << 8) | low;
+    }
+
+    default void writeWord(int address, int value) {
+        writeByte(address, value);
+        writeByte(address + 1, value >> 8);
+    }
+
+    default void load(int address, byte[] data, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            writeByte(address + i, data[offset + i]);
+        }
+    }
+
+    /**
+     * Installs the watcher for writes to pages marked with watchPage(). Returns false if this bus cannot watch
+     * writes, in which case its users have to find out about modified code some other way.
+     */
+    default boolean setWriteWatcher(WriteWatcher watcher) {
+        return false;
+    }
+
+    default void watchPage(int page, boolean watched) {
+    }
+}
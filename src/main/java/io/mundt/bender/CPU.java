@@ -1,5 +1,11 @@
 package io.mundt.bender;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
 public class CPU {
     public static final byte CARRY_FLAG = 0x01;
     public static final byte ZERO_FLAG = 0x02;
@@ -9,7 +15,36 @@ public class CPU {
     public static final byte OVERFLOW_FLAG = 0x40;
     public static final byte NEGATIVE_FLAG = (byte) 0x80;
 
-    public final Memory memory;
+    static final int PAGE_CROSSED = 0x10000;
+
+    static final int ILLEGAL_OPCODE = -1;
+
+    // Bit of the interrupt lines word for a pending NMI; the other bits are IRQ sources.
+    public static final int NMI_LINE = 1 << 31;
+
+    static final int NMI_VECTOR = 0xFFFA;
+    static final int IRQ_VECTOR = 0xFFFE;
+
+    private static final int INTERRUPT_CYCLES = 7;
+
+    private static final VarHandle INTERRUPT_LINES;
+
+    static {
+        try {
+            INTERRUPT_LINES = MethodHandles.lookup().findVarHandle(CPU.class, "interruptLines", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final int FLAGS_CURRENT = 0x100;
+
+    // Replaced only by installBus(), which puts the watching and counting buses in front of it.
+    public Bus bus;
+
+    // The bus without the watching and counting buses, for reads of the emulator itself, such as decoding, compiling
+    // and tracing, which neither hit watchpoints nor show up in the heatmap.
+    Bus plainBus;
 
     public short pc;
 
@@ -25,37 +60,345 @@ public class CPU {
     public boolean overflow;
     public boolean negative;
 
-    public CPU(Memory memory) {
-        this.memory = memory;
+    public long cycles;
+
+    public final Scheduler scheduler = new Scheduler(this);
+
+    // Catch-up devices created for this CPU, whose sync state snapshots save along with the scheduler's.
+    final List<CatchUpDevice> catchUpDevices = new ArrayList<>();
+
+    private Dispatch dispatch = Dispatch.SWITCH;
+
+    private boolean lazyFlags;
+
+    private Recompiler recompiler;
+
+    private DecodeCache decodeCache;
+
+    private boolean fusion;
+
+    private IdleLoopDetector idleLoops;
+
+    private InstructionTrace trace;
+
+    private Profiler profiler;
+
+    private CallGraphProfiler callGraph;
+
+    private MemoryHeatmap heatmap;
+
+    private Metrics metrics;
+
+    private Breakpoints breakpoints;
+
+    // Cycle count the current slice of run() ends at: the end of the run or the next event, lowered when an earlier
+    // event is scheduled during the slice. Idle loops are skipped up to it.
+    long deadline;
+
+    // Cycles taken by the instructions of the running fused pair or compiled block before the current one, so devices
+    // accessed from the middle of it see the cycle their instruction started at. 0 outside of them.
+    int elapsed;
+
+    // Instructions run beyond the one every dispatch counts as: the rest of fused pairs and compiled blocks, and
+    // skipped idle loop iterations. Only the metrics look at it, at the change between two points, so it may wrap.
+    int extraInstructions;
+
+    // Page-crossing penalties taken by indexed reads and branches, for the metrics like extraInstructions.
+    int pageCrossings;
+
+    // Set when a write drops the compiled block that is running, which then returns after the writing instruction.
+    boolean blockDropped;
+
+    // Address of the execute breakpoint the last run() stopped at, which the next run() executes instead of stopping
+    // there again, or -1 after any other stop.
+    private int resumeAddress = -1;
+
+    // Whether the current run() may skip idle loops: never outside run() or with a condition, which may look at cycles.
+    private boolean skippingIdleLoops;
+
+    // Code caches with entries on each page. Pages in use are watched on the bus so the caches see writes to them.
+    private final int[] codePageUses = new int[0x100];
+
+    // Asserted IRQ sources and NMI_LINE. Only accessed through INTERRUPT_LINES, as other threads change it.
+    @SuppressWarnings("unused")
+    private int interruptLines;
+
+    // Last byte that set Z and N in lazy mode, or FLAGS_CURRENT when the zero and negative fields are up to date.
+    private int flagResult = FLAGS_CURRENT;
+
+    public CPU(Bus bus) {
+        this.bus = bus;
+        plainBus = bus;
+    }
+
+    public Dispatch getDispatch() {
+        return dispatch;
+    }
+
+    public void setDispatch(Dispatch dispatch) {
+        if (dispatch == Dispatch.RECOMPILE && recompiler == null) {
+            bus.setWriteWatcher(this::codeWritten);
+            recompiler = new Recompiler(this);
+        }
+        if (dispatch == Dispatch.PREDECODE && decodeCache == null) {
+            bus.setWriteWatcher(this::codeWritten);
+            decodeCache = new DecodeCache(this);
+        }
+        this.dispatch = dispatch;
+    }
+
+    /**
+     * Sets how often an address has to be reached in RECOMPILE mode before the block starting there is compiled.
+     */
+    public void setCompileThreshold(int threshold) {
+        setDispatch(Dispatch.RECOMPILE);
+        recompiler.setThreshold(threshold);
+    }
+
+    /**
+     * Drops all compiled blocks and decoded instructions. Writes through the bus do this on their own; this is for
+     * code changed behind its back, e.g. in a shared buffer or on a bus that cannot watch writes.
+     */
+    public void invalidateCompiledCode() {
+        if (recompiler != null) {
+            recompiler.invalidate();
+        }
+        if (decodeCache != null) {
+            decodeCache.clear();
+        }
+    }
+
+    public boolean isFusion() {
+        return fusion;
+    }
+
+    /**
+     * With fusion on, PREDECODE decodes common instruction pairs such as DEX / BNE into one fused handler, so a step
+     * can execute both. run() with a condition still executes them one by one.
+     */
+    public void setFusion(boolean fusion) {
+        this.fusion = fusion;
+        if (decodeCache != null) {
+            decodeCache.clear();
+        }
+    }
+
+    public boolean isIdleLoopSkipping() {
+        return idleLoops != null;
+    }
+
+    /**
+     * With idle loop skipping on, run() without a condition or execute breakpoints recognizes polling loops that write
+     * nothing and repeat with the same registers and flags, and skips their iterations up to the next scheduled event
+     * instead of executing them. Only what the loop reads can end it, so this assumes that nothing but the CPU and
+     * scheduled events changes memory or raises interrupts during a run. Each run() starts recognizing anew. Off by
+     * default, for cycle-exact work with devices that change on their own.
+     */
+    public void setIdleLoopSkipping(boolean skipping) {
+        idleLoops = skipping ? new IdleLoopDetector(this) : null;
+    }
+
+    public InstructionTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Records every instruction executed from now on into the trace, or stops tracing for null. While tracing,
+     * instructions run one at a time, without compiled blocks or fused pairs, so none is missing from the trace.
+     */
+    public void setTrace(InstructionTrace trace) {
+        this.trace = trace;
+    }
+
+    public Profiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Counts every instruction executed from now on in the profiler, or stops profiling for null. Like tracing, this
+     * runs instructions one at a time.
+     */
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public CallGraphProfiler getCallGraphProfiler() {
+        return callGraph;
+    }
+
+    /**
+     * Follows calls and returns from now on in the call graph profiler, or stops for null. Like tracing, this runs
+     * instructions one at a time.
+     */
+    public void setCallGraphProfiler(CallGraphProfiler callGraph) {
+        this.callGraph = callGraph;
+    }
+
+    public MemoryHeatmap getHeatmap() {
+        return heatmap;
+    }
+
+    /**
+     * Counts accesses in the heatmap from now on, or stops for null. The counting bus is swapped in front of the bus
+     * and out again, so nothing is counted, or checked, without a heatmap. With one, instructions run one at a time
+     * like when tracing.
+     */
+    public void setHeatmap(MemoryHeatmap heatmap) {
+        this.heatmap = heatmap;
+        installBus();
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Adds to the metrics from now on, or stops for null. run() adds once per slice, so unlike the profilers this
+     * leaves the dispatch as it is.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public Breakpoints getBreakpoints() {
+        return breakpoints;
+    }
+
+    /**
+     * Stops run() at the breakpoints and watchpoints from now on, or no longer for null. After run() stopped at an
+     * execute breakpoint, the next run() starts by executing the instruction there if pc was left alone, so calling it
+     * again continues from the breakpoint.
+     */
+    public void setBreakpoints(Breakpoints breakpoints) {
+        if (this.breakpoints != null) {
+            this.breakpoints.cpu = null;
+        }
+        if (breakpoints != null) {
+            breakpoints.cpu = this;
+        }
+        this.breakpoints = breakpoints;
+        breakpointsChanged();
+    }
+
+    // Ends the current slice, so run() picks up which kinds of breakpoints are armed before the next instruction.
+    void breakpointsChanged() {
+        installBus();
+        if (cycles < deadline) {
+            deadline = cycles;
+        }
+    }
+
+    private void installBus() {
+        Bus plain = Breakpoints.unwatched(MemoryHeatmap.uninstrumented(bus));
+        plainBus = plain;
+        Bus watched = breakpoints != null && breakpoints.isWatching() ? breakpoints.watch(plain) : plain;
+        bus = heatmap != null ? heatmap.instrument(watched) : watched;
+    }
+
+    /**
+     * Asserts the IRQ line for the sources in the mask. The line stays asserted until every source releases it, and
+     * the CPU takes the interrupt at the next instruction boundary at which interrupts are enabled. Safe to call from
+     * any thread; a compiled block or fused pair that is already running finishes first.
+     */
+    public void assertIrq(int sources) {
+        INTERRUPT_LINES.getAndBitwiseOrRelease(this, sources & ~NMI_LINE);
+    }
+
+    public void releaseIrq(int sources) {
+        INTERRUPT_LINES.getAndBitwiseAndRelease(this, ~(sources & ~NMI_LINE));
+    }
+
+    public boolean isIrqAsserted() {
+        return ((int) INTERRUPT_LINES.getAcquire(this) & ~NMI_LINE) != 0;
+    }
+
+    /**
+     * Signals an NMI, which the CPU takes once at the next instruction boundary whatever the interrupt disable flag.
+     * Safe to call from any thread.
+     */
+    public void triggerNmi() {
+        INTERRUPT_LINES.getAndBitwiseOrRelease(this, NMI_LINE);
+    }
+
+    void watchCodePage(int page) {
+        if (codePageUses[page]++ == 0) {
+            bus.watchPage(page, true);
+        }
+    }
+
+    void unwatchCodePage(int page) {
+        if (--codePageUses[page] == 0) {
+            bus.watchPage(page, false);
+        }
+    }
+
+    private void codeWritten(int address, int length) {
+        if (recompiler != null) {
+            recompiler.written(address, length);
+        }
+        if (decodeCache != null) {
+            decodeCache.written(address, length);
+        }
+    }
+
+    public boolean isLazyFlags() {
+        return lazyFlags;
+    }
+
+    /**
+     * In lazy mode instructions only record the result that Z and N derive from, and the flags are computed when
+     * getStatus(), isZero() or isNegative() asks for them. The zero and negative fields are then only current after
+     * syncFlags(). Carry and overflow have no producers in the implemented instruction set and stay eager.
+     */
+    public void setLazyFlags(boolean lazyFlags) {
+        syncFlags();
+        this.lazyFlags = lazyFlags;
+    }
+
+    public boolean isZero() {
+        return flagResult == FLAGS_CURRENT ? zero : flagResult == 0;
+    }
+
+    public boolean isNegative() {
+        return flagResult == FLAGS_CURRENT ? negative : flagResult < 0;
+    }
+
+    public void syncFlags() {
+        if (flagResult != FLAGS_CURRENT) {
+            zero = flagResult == 0;
+            negative = flagResult < 0;
+            flagResult = FLAGS_CURRENT;
+        }
     }
 
     public void reset() {
-        pc = (short) memory.readWord(0xFFFC);
+        pc = (short) bus.readWord(0xFFFC);
         sp = (byte) 0xFF;
         a = x = y = 0;
         carry = zero = interruptDisabled = decimalMode = breakCommand = overflow = negative = false;
+        flagResult = FLAGS_CURRENT;
     }
 
     public int fetchByte() {
-        int data = memory.readByte(pc);
+        int data = bus.readByte(pc);
         pc++;
         return data;
     }
 
     public int fetchWord() {
-        int data = memory.readWord(pc);
+        int data = bus.readWord(pc);
         pc += 2;
         return data;
     }
 
     public void stackPush(int value) {
-        memory.writeByte((sp & 0xFF) + 0x100, value);
+        bus.writeByte((sp & 0xFF) + 0x100, value);
         sp--;
     }
 
     public int stackPop() {
         sp++;
-        return memory.readByte((sp & 0xFF) + 0x100);
+        return bus.readByte((sp & 0xFF) + 0x100);
 
     }
 
@@ -64,7 +407,7 @@ public class CPU {
         if (carry) {
             status |= CARRY_FLAG;
         }
-        if (zero) {
+        if (isZero()) {
             status |= ZERO_FLAG;
         }
         if (interruptDisabled) {
@@ -79,7 +422,7 @@ public class CPU {
         if (overflow) {
             status |= OVERFLOW_FLAG;
         }
-        if (negative) {
+        if (isNegative()) {
             status |= NEGATIVE_FLAG;
         }
         return status & 0xFF;
@@ -93,237 +436,403 @@ public class CPU {
         breakCommand = (status & BREAK_COMMAND_FLAG) != 0;
         overflow = (status & OVERFLOW_FLAG) != 0;
         negative = (status & NEGATIVE_FLAG) != 0;
+        flagResult = FLAGS_CURRENT;
+    }
+
+    /**
+     * Returns the cycle the current instruction started at, also in the middle of a fused pair or compiled block.
+     */
+    public long getInstructionCycle() {
+        return cycles + elapsed;
     }
 
     public int step() throws UnknownOpcodeException {
-        byte opcode = (byte) fetchByte();
-        switch (opcode) {
+        scheduler.fireDue(cycles);
+        resumeAddress = -1;
+        int instructionCycles;
+        int extra = extraInstructions;
+        int crossings = pageCrossings;
+        boolean interrupt = (int) INTERRUPT_LINES.getOpaque(this) != 0 && interruptPending();
+        if (interrupt) {
+            instructionCycles = enterInterrupt();
+        } else if (trace != null || profiler != null || callGraph != null || heatmap != null) {
+            instructionCycles = executeObserved();
+        } else {
+            instructionCycles = execute(Long.MAX_VALUE);
+        }
+        if (instructionCycles == ILLEGAL_OPCODE) {
+            if (metrics != null) {
+                metrics.stoppedAtIllegalOpcode();
+            }
+            throw new UnknownOpcodeException((byte) plainBus.readByte(pc - 1));
+        }
+        cycles += instructionCycles;
+        if (metrics != null) {
+            metrics.ran(instructionCycles, interrupt ? 0 : 1 + extraInstructions - extra, interrupt ? 1 : 0,
+                    pageCrossings - crossings);
+        }
+        return instructionCycles;
+    }
+
+    public StopReason run(long cycleBudget) {
+        return run(cycleBudget, null);
+    }
+
+    public StopReason runUntil(Predicate<CPU> condition) {
+        return run(Long.MAX_VALUE, condition);
+    }
+
+    /**
+     * Runs in slices up to the next scheduled event, firing due events between instructions.
+     */
+    public StopReason run(long cycleBudget, Predicate<CPU> condition) {
+        StopReason reason = StopReason.BUDGET_REACHED;
+        long end = cycleBudget > Long.MAX_VALUE - cycles ? Long.MAX_VALUE : cycles + cycleBudget;
+        if (idleLoops != null) {
+            idleLoops.reset();
+        }
+        // Checked once, so the loop costs nothing extra when tracing and profilers are off.
+        boolean observed = trace != null || profiler != null || callGraph != null || heatmap != null;
+        long started = cycles;
+        int resumeAt = resumeAddress;
+        resumeAddress = -1;
+        if (breakpoints != null) {
+            breakpoints.clearHit();
+        }
+        // Counted in locals and added to the metrics at the end of each slice.
+        long published = cycles;
+        int publishedExtra = extraInstructions;
+        int publishedCrossings = pageCrossings;
+        long dispatches = 0;
+        long interrupts = 0;
+        run:
+        while (cycles < end) {
+            scheduler.fireDue(cycles);
+            deadline = Math.min(end, scheduler.nextDeadline());
+            if (metrics != null && deadline - cycles > Metrics.PUBLISH_QUANTUM) {
+                deadline = cycles + Metrics.PUBLISH_QUANTUM;
+            }
+            // Read per slice, as changing the breakpoints ends it.
+            boolean breaking = breakpoints != null && breakpoints.isBreaking();
+            boolean single = condition != null || breakpoints != null && breakpoints.isWatching();
+            // Skipped iterations would pass execute breakpoints in the loop without stopping.
+            skippingIdleLoops = idleLoops != null && condition == null && !breaking;
+            while (cycles < deadline) {
+                int instructionCycles;
+                if ((int) INTERRUPT_LINES.getOpaque(this) != 0 && interruptPending()) {
+                    instructionCycles = enterInterrupt();
+                    interrupts++;
+                } else if (breaking && breakpoints.isBreakingOnPage(pc & 0xFFFF)) {
+                    if ((cycles != started || (pc & 0xFFFF) != resumeAt) && breakpoints.breaksAt(pc & 0xFFFF)) {
+                        reason = StopReason.BREAKPOINT;
+                        resumeAddress = pc & 0xFFFF;
+                        break run;
+                    }
+                    instructionCycles = observed ? executeObserved() : executeSingle();
+                } else if (observed) {
+                    instructionCycles = executeObserved();
+                } else {
+                    instructionCycles = single ? executeSingle() : execute(deadline - cycles);
+                }
+                if (instructionCycles == ILLEGAL_OPCODE) {
+                    pc--;
+                    reason = StopReason.ILLEGAL_OPCODE;
+                    break run;
+                }
+                cycles += instructionCycles;
+                dispatches++;
+                if (condition != null && condition.test(this)) {
+                    reason = StopReason.BREAKPOINT;
+                    break run;
+                }
+            }
+            if (metrics != null) {
+                metrics.ran(cycles - published, dispatches - interrupts + extraInstructions - publishedExtra,
+                        interrupts, pageCrossings - publishedCrossings);
+                published = cycles;
+                publishedExtra = extraInstructions;
+                publishedCrossings = pageCrossings;
+                dispatches = interrupts = 0;
+            }
+            if (breakpoints != null && breakpoints.isHit()) {
+                reason = StopReason.WATCHPOINT;
+                break;
+            }
+        }
+        if (metrics != null) {
+            metrics.ran(cycles - published, dispatches - interrupts + extraInstructions - publishedExtra, interrupts,
+                    pageCrossings - publishedCrossings);
+            if (reason == StopReason.ILLEGAL_OPCODE) {
+                metrics.stoppedAtIllegalOpcode();
+            }
+        }
+        deadline = 0;
+        skippingIdleLoops = false;
+        return reason;
+    }
+
+    private boolean interruptPending() {
+        int lines = (int) INTERRUPT_LINES.getAcquire(this);
+        return (lines & NMI_LINE) != 0 || lines != 0 && !interruptDisabled;
+    }
+
+    /**
+     * Pushes pc and the status with B clear, as the hardware does for IRQ and NMI, disables interrupts and jumps
+     * through the vector. An NMI is consumed; an IRQ stays asserted until its sources release it.
+     */
+    private int enterInterrupt() {
+        int lines = (int) INTERRUPT_LINES.getAndBitwiseAndAcquire(this, ~NMI_LINE);
+        int vector = (lines & NMI_LINE) != 0 ? NMI_VECTOR : IRQ_VECTOR;
+        stackPush((pc & 0xFFFF) >>> 8);
+        stackPush(pc & 0xFF);
+        stackPush(getStatus() & ~BREAK_COMMAND_FLAG | 0x20);
+        interruptDisabled = true;
+        pc = (short) bus.readWord(vector);
+        if (callGraph != null) {
+            callGraph.interrupted(pc & 0xFFFF, sp & 0xFF, INTERRUPT_CYCLES);
+        }
+        return INTERRUPT_CYCLES;
+    }
+
+    private int execute(long cycleBudget) {
+        if (dispatch == Dispatch.RECOMPILE) {
+            return recompiler.execute(cycleBudget);
+        }
+        return interpret();
+    }
+
+    int interpret() {
+        if (dispatch == Dispatch.PREDECODE) {
+            return executePredecoded();
+        }
+        if (dispatch == Dispatch.TABLE) {
+            return executeTable();
+        }
+        return executeSwitch();
+    }
+
+    private int executeTable() {
+        return executeTable(fetchByte());
+    }
+
+    private int executeTable(int opcode) {
+        OpcodeTable.Handler handler = OpcodeTable.HANDLERS[opcode];
+        if (handler == null) {
+            return ILLEGAL_OPCODE;
+        }
+        int operand = switch (OpcodeTable.OPERAND_BYTES[opcode]) {
+            case 1 -> fetchByte();
+            case 2 -> fetchWord();
+            default -> 0;
+        };
+        return OpcodeTable.CYCLES[opcode] + handler.execute(this, operand);
+    }
+
+    // Executes exactly one instruction, for callers that look at the state after each one.
+    private int executeObserved() {
+        if (trace != null) {
+            trace.record(this);
+        }
+        int address = pc & 0xFFFF;
+        int opcode = fetchByte();
+        int instructionCycles = executeSingle(opcode);
+        if (instructionCycles != ILLEGAL_OPCODE) {
+            if (profiler != null) {
+                profiler.count(address, opcode, instructionCycles);
+            }
+            if (callGraph != null) {
+                callGraph.executed(opcode, pc & 0xFFFF, sp & 0xFF, instructionCycles);
+            }
+            if (heatmap != null) {
+                heatmap.executed(address, sp & 0xFF);
+            }
+        }
+        return instructionCycles;
+    }
+
+    private int executeSingle() {
+        return executeSingle(fetchByte());
+    }
+
+    // Fetches through the bus, so watchpoints and the heatmap see every fetch. Fused pairs and the decode cache have
+    // nothing to save on a single instruction, so PREDECODE runs it like TABLE.
+    private int executeSingle(int opcode) {
+        if (dispatch == Dispatch.PREDECODE || dispatch == Dispatch.TABLE) {
+            return executeTable(opcode);
+        }
+        return executeSwitch(opcode);
+    }
+
+    private int executePredecoded() {
+        int address = pc & 0xFFFF;
+        int entry = decodeCache.entries[address];
+        if (entry == 0) {
+            entry = decodeCache.decode(address);
+            if (entry == 0) {
+                pc++;
+                return ILLEGAL_OPCODE;
+            }
+        }
+        int index = DecodeCache.handler(entry);
+        extraInstructions += index >>> 8; // the second instruction of a fused pair
+        pc = (short) (address + DecodeCache.length(entry));
+        return DecodeCache.cycles(entry) + OpcodeTable.HANDLERS[index].execute(this, decodeCache.operands[address]);
+    }
+
+    private int executeSwitch() {
+        return executeSwitch(fetchByte());
+    }
+
+    // Executes the instruction whose opcode has just been fetched.
+    private int executeSwitch(int opcode) {
+        switch ((byte) opcode) {
             case (byte) 0xA9 -> { // LDA #nn
-                a = (byte) fetchByte();
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                lda(fetchByte());
                 return 2;
             }
             case (byte) 0xA5 -> { // LDA nn
-                a = (byte) memory.readByte(fetchByte());
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                lda(bus.readByte(fetchByte()));
                 return 3;
             }
             case (byte) 0xB5 -> { // LDA nn,X
-                a = (byte) memory.readByte(fetchByte() + x);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                lda(bus.readByte(zeroPageX(fetchByte())));
                 return 4;
             }
             case (byte) 0xAD -> { // LDA nnnn
-                a = (byte) memory.readByte(fetchWord());
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                lda(bus.readByte(fetchWord()));
                 return 4;
             }
             case (byte) 0xBD -> { // LDA nnnn,X
-                int absoluteAddress = fetchWord();
-                int effectiveAddress = absoluteAddress + x;
-                a = (byte) memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
-                if ((effectiveAddress & 0xFF00) != (absoluteAddress & 0xFF00)) {
-                    return 5;
-                } else {
-                    return 4;
-                }
+                int address = absoluteX(fetchWord());
+                lda(bus.readByte(address));
+                return 4 + penalty(address);
             }
             case (byte) 0xB9 -> { // LDA nnnn,Y
-                int absoluteAddress = fetchWord();
-                int effectiveAddress = absoluteAddress + y;
-                a = (byte) memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
-                if ((effectiveAddress & 0xFF00) != (absoluteAddress & 0xFF00)) {
-                    return 5;
-                } else {
-                    return 4;
-                }
+                int address = absoluteY(fetchWord());
+                lda(bus.readByte(address));
+                return 4 + penalty(address);
             }
             case (byte) 0xA1 -> { // LDA (nn,X)
-                int indirectAddress = fetchByte() + x;
-                int effectiveAddress = memory.readWord(indirectAddress);
-                a = (byte) memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                lda(bus.readByte(indirectX(fetchByte())));
                 return 6;
             }
             case (byte) 0xB1 -> { // LDA (nn),Y
-                int indirectAddress = fetchByte();
-                int absoluteAddress = memory.readWord(indirectAddress);
-                int effectiveAddress = absoluteAddress + y;
-                a = (byte) memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
-                if ((effectiveAddress & 0xFF00) != (absoluteAddress & 0xFF00)) {
-                    return 6;
-                } else {
-                    return 5;
-                }
+                int address = indirectY(fetchByte());
+                lda(bus.readByte(address));
+                return 5 + penalty(address);
             }
             case (byte) 0xA2 -> { // LDX #nn
-                x = (byte) fetchByte();
-                zero = x == 0;
-                negative = (x & 0x80) != 0;
+                ldx(fetchByte());
                 return 2;
             }
             case (byte) 0xA6 -> { // LDX nn
-                x = (byte) memory.readByte(fetchByte());
-                zero = x == 0;
-                negative = (x & 0x80) != 0;
+                ldx(bus.readByte(fetchByte()));
                 return 3;
             }
             case (byte) 0xB6 -> { // LDX nn,Y
-                x = (byte) memory.readByte(fetchByte() + y);
-                zero = x == 0;
-                negative = (x & 0x80) != 0;
+                ldx(bus.readByte(zeroPageY(fetchByte())));
                 return 4;
             }
             case (byte) 0xAE -> { // LDX nnnn
-                x = (byte) memory.readByte(fetchWord());
-                zero = x == 0;
-                negative = (x & 0x80) != 0;
+                ldx(bus.readByte(fetchWord()));
                 return 4;
             }
             case (byte) 0xBE -> { // LDX nnnn,Y
-                int absoluteAddress = fetchWord();
-                int effectiveAddress = absoluteAddress + y;
-                x = (byte) memory.readByte(effectiveAddress);
-                zero = x == 0;
-                negative = (x & 0x80) != 0;
-                if ((effectiveAddress & 0xFF00) != (absoluteAddress & 0xFF00)) {
-                    return 5;
-                } else {
-                    return 4;
-                }
+                int address = absoluteY(fetchWord());
+                ldx(bus.readByte(address));
+                return 4 + penalty(address);
             }
             case (byte) 0xA0 -> { // LDY #nn
-                y = (byte) fetchByte();
-                zero = y == 0;
-                negative = (y & 0x80) != 0;
+                ldy(fetchByte());
                 return 2;
             }
             case (byte) 0xA4 -> { // LDY nn
-                y = (byte) memory.readByte(fetchByte());
-                zero = y == 0;
-                negative = (y & 0x80) != 0;
+                ldy(bus.readByte(fetchByte()));
                 return 3;
             }
             case (byte) 0xB4 -> { // LDY nn,X
-                y = (byte) memory.readByte(fetchByte() + x);
-                zero = y == 0;
-                negative = (y & 0x80) != 0;
+                ldy(bus.readByte(zeroPageX(fetchByte())));
                 return 4;
             }
             case (byte) 0xAC -> { // LDY nnnn
-                y = (byte) memory.readByte(fetchWord());
-                zero = y == 0;
-                negative = (y & 0x80) != 0;
+                ldy(bus.readByte(fetchWord()));
                 return 4;
             }
             case (byte) 0xBC -> { // LDY nnnn,X
-                int absoluteAddress = fetchWord();
-                int effectiveAddress = absoluteAddress + x;
-                y = (byte) memory.readByte(effectiveAddress);
-                zero = y == 0;
-                negative = (y & 0x80) != 0;
-                if ((effectiveAddress & 0xFF00) != (absoluteAddress & 0xFF00)) {
-                    return 5;
-                } else {
-                    return 4;
-                }
+                int address = absoluteX(fetchWord());
+                ldy(bus.readByte(address));
+                return 4 + penalty(address);
             }
             case (byte) 0x85 -> { // STA nn
-                memory.writeByte(fetchByte(), a);
+                bus.writeByte(fetchByte(), a);
                 return 3;
             }
             case (byte) 0x95 -> { // STA nn,X
-                memory.writeByte(fetchByte() + x, a);
+                bus.writeByte(zeroPageX(fetchByte()), a);
                 return 4;
             }
             case (byte) 0x8D -> { // STA nnnn
-                memory.writeByte(fetchWord(), a);
+                bus.writeByte(fetchWord(), a);
                 return 4;
             }
             case (byte) 0x9D -> { // STA nnnn,X
-                memory.writeByte(fetchWord() + x, a);
+                bus.writeByte(absoluteX(fetchWord()), a);
                 return 5;
             }
             case (byte) 0x99 -> { // STA nnnn,Y
-                memory.writeByte(fetchWord() + y, a);
+                bus.writeByte(absoluteY(fetchWord()), a);
                 return 5;
             }
             case (byte) 0x81 -> { // STA (nn,X)
-                int indirectAddress = fetchByte() + x;
-                int effectiveAddress = memory.readWord(indirectAddress);
-                memory.writeByte(effectiveAddress, a);
+                bus.writeByte(indirectX(fetchByte()), a);
                 return 6;
             }
             case (byte) 0x91 -> { // STA (nn),Y
-                int indirectAddress = fetchByte();
-                int absoluteAddress = memory.readWord(indirectAddress);
-                int effectiveAddress = absoluteAddress + y;
-                memory.writeByte(effectiveAddress, a);
+                bus.writeByte(indirectY(fetchByte()), a);
                 return 6;
             }
             case (byte) 0x86 -> { // STX nn
-                memory.writeByte(fetchByte(), x);
+                bus.writeByte(fetchByte(), x);
                 return 3;
             }
             case (byte) 0x96 -> { // STX nn,Y
-                memory.writeByte(fetchByte() + y, x);
+                bus.writeByte(zeroPageY(fetchByte()), x);
                 return 4;
             }
             case (byte) 0x8E -> { // STX nnnn
-                memory.writeByte(fetchWord(), x);
+                bus.writeByte(fetchWord(), x);
                 return 4;
             }
             case (byte) 0x84 -> { // STY nn
-                memory.writeByte(fetchByte(), y);
+                bus.writeByte(fetchByte(), y);
                 return 3;
             }
             case (byte) 0x94 -> { // STY nn,X
-                memory.writeByte(fetchByte() + x, y);
+                bus.writeByte(zeroPageX(fetchByte()), y);
                 return 4;
             }
             case (byte) 0x8C -> { // STY nnnn
-                memory.writeByte(fetchWord(), y);
+                bus.writeByte(fetchWord(), y);
                 return 4;
             }
             case (byte) 0xAA -> { // TAX
-                x = a;
-                zero = x == 0;
-                negative = (x & 0x80) != 0;
+                ldx(a);
                 return 2;
             }
             case (byte) 0xA8 -> { // TAY
-                y = a;
-                zero = y == 0;
-                negative = (y & 0x80) != 0;
+                ldy(a);
                 return 2;
             }
             case (byte) 0x8A -> { // TXA
-                a = x;
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                lda(x);
                 return 2;
             }
             case (byte) 0x98 -> { // TYA
-                a = y;
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                lda(y);
                 return 2;
             }
             case (byte) 0xBA -> { // TSX
-                x = sp;
-                zero = x == 0;
-                negative = (x & 0x80) != 0;
+                ldx(sp);
                 return 2;
             }
             case (byte) 0x9A -> { // TXS
@@ -339,9 +848,7 @@ public class CPU {
                 return 3;
             }
             case (byte) 0x68 -> { // PLA
-                a = (byte) stackPop();
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                lda(stackPop());
                 return 4;
             }
             case (byte) 0x28 -> { // PLP
@@ -349,216 +856,327 @@ public class CPU {
                 return 4;
             }
             case (byte) 0x29 -> { // AND #nn
-                a &= fetchByte();
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                and(fetchByte());
                 return 2;
             }
             case (byte) 0x25 -> { // AND nn
-                a &= memory.readByte(fetchByte());
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                and(bus.readByte(fetchByte()));
                 return 3;
             }
             case (byte) 0x35 -> { // AND nn,X
-                a &= memory.readByte(fetchByte() + x);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                and(bus.readByte(zeroPageX(fetchByte())));
                 return 4;
             }
             case (byte) 0x2D -> { // AND nnnn
-                a &= memory.readByte(fetchWord());
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                and(bus.readByte(fetchWord()));
                 return 4;
             }
             case (byte) 0x3D -> { // AND nnnn,X
-                int absoluteAddress = fetchWord();
-                int effectiveAddress = absoluteAddress + x;
-                a &= memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
-                if ((effectiveAddress & 0xFF00) != (absoluteAddress & 0xFF00)) {
-                    return 5;
-                } else {
-                    return 4;
-                }
+                int address = absoluteX(fetchWord());
+                and(bus.readByte(address));
+                return 4 + penalty(address);
             }
             case (byte) 0x39 -> { // AND nnnn,Y
-                int absoluteAddress = fetchWord();
-                int effectiveAddress = absoluteAddress + y;
-                a &= memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
-                if ((effectiveAddress & 0xFF00) != (absoluteAddress & 0xFF00)) {
-                    return 5;
-                } else {
-                    return 4;
-                }
+                int address = absoluteY(fetchWord());
+                and(bus.readByte(address));
+                return 4 + penalty(address);
             }
             case (byte) 0x21 -> { // AND (nn,X)
-                int indirectAddress = fetchByte() + x;
-                int effectiveAddress = memory.readWord(indirectAddress);
-                a &= memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                and(bus.readByte(indirectX(fetchByte())));
                 return 6;
             }
             case (byte) 0x31 -> { // AND (nn),Y
-                int indirectAddress = fetchByte();
-                int absoluteAddress = memory.readWord(indirectAddress);
-                int effectiveAddress = absoluteAddress + y;
-                a &= memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
-                if ((effectiveAddress & 0xFF00) != (absoluteAddress & 0xFF00)) {
-                    return 6;
-                } else {
-                    return 5;
-                }
+                int address = indirectY(fetchByte());
+                and(bus.readByte(address));
+                return 5 + penalty(address);
             }
             case (byte) 0x49 -> { // EOR #nn
-                a ^= fetchByte();
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                eor(fetchByte());
                 return 2;
             }
             case (byte) 0x45 -> { // EOR nn
-                a ^= memory.readByte(fetchByte());
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                eor(bus.readByte(fetchByte()));
                 return 3;
             }
             case (byte) 0x55 -> { // EOR nn,X
-                a ^= memory.readByte(fetchByte() + x);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                eor(bus.readByte(zeroPageX(fetchByte())));
                 return 4;
             }
             case (byte) 0x4D -> { // EOR nnnn
-                a ^= memory.readByte(fetchWord());
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                eor(bus.readByte(fetchWord()));
                 return 4;
             }
             case (byte) 0x5D -> { // EOR nnnn,X
-                int absoluteAddress = fetchWord();
-                int effectiveAddress = absoluteAddress + x;
-                a ^= memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
-                if ((effectiveAddress & 0xFF00) != (absoluteAddress & 0xFF00)) {
-                    return 5;
-                } else {
-                    return 4;
-                }
+                int address = absoluteX(fetchWord());
+                eor(bus.readByte(address));
+                return 4 + penalty(address);
             }
             case (byte) 0x59 -> { // EOR nnnn,Y
-                int absoluteAddress = fetchWord();
-                int effectiveAddress = absoluteAddress + y;
-                a ^= memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
-                if ((effectiveAddress & 0xFF00) != (absoluteAddress & 0xFF00)) {
-                    return 5;
-                } else {
-                    return 4;
-                }
+                int address = absoluteY(fetchWord());
+                eor(bus.readByte(address));
+                return 4 + penalty(address);
             }
             case (byte) 0x41 -> { // EOR (nn,X)
-                int indirectAddress = fetchByte() + x;
-                int effectiveAddress = memory.readWord(indirectAddress);
-                a ^= memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                eor(bus.readByte(indirectX(fetchByte())));
                 return 6;
             }
             case (byte) 0x51 -> { // EOR (nn),Y
-                int indirectAddress = fetchByte();
-                int absoluteAddress = memory.readWord(indirectAddress);
-                int effectiveAddress = absoluteAddress + (y & 0xFF);
-                a ^= memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
-                if ((effectiveAddress & 0xFF00) != (absoluteAddress & 0xFF00)) {
-                    return 6;
-                } else {
-                    return 5;
-                }
+                int address = indirectY(fetchByte());
+                eor(bus.readByte(address));
+                return 5 + penalty(address);
             }
             case (byte) 0x09 -> { // ORA #nn
-                a |= fetchByte();
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                ora(fetchByte());
                 return 2;
             }
             case (byte) 0x05 -> { // ORA nn
-                a |= memory.readByte(fetchByte());
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                ora(bus.readByte(fetchByte()));
                 return 3;
             }
             case (byte) 0x15 -> { // ORA nn,X
-                a |= memory.readByte(fetchByte() + x);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                ora(bus.readByte(zeroPageX(fetchByte())));
                 return 4;
             }
             case (byte) 0x0D -> { // ORA nnnn
-                a |= memory.readByte(fetchWord());
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                ora(bus.readByte(fetchWord()));
                 return 4;
             }
             case (byte) 0x1D -> { // ORA nnnn,X
-                int absoluteAddress = fetchWord();
-                int effectiveAddress = absoluteAddress + (x & 0xFF);
-                a |= memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
-                if ((effectiveAddress & 0xFF00) != (absoluteAddress & 0xFF00)) {
-                    return 5;
-                } else {
-                    return 4;
-                }
+                int address = absoluteX(fetchWord());
+                ora(bus.readByte(address));
+                return 4 + penalty(address);
             }
             case (byte) 0x19 -> { // ORA nnnn,Y
-                int absoluteAddress = fetchWord();
-                int effectiveAddress = absoluteAddress + (y & 0xFF);
-                a |= memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
-                if ((effectiveAddress & 0xFF00) != (absoluteAddress & 0xFF00)) {
-                    return 5;
-                } else {
-                    return 4;
-                }
+                int address = absoluteY(fetchWord());
+                ora(bus.readByte(address));
+                return 4 + penalty(address);
             }
             case (byte) 0x01 -> { // ORA (nn,X)
-                int indirectAddress = fetchByte() + x;
-                int effectiveAddress = memory.readWord(indirectAddress);
-                a |= memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
+                ora(bus.readByte(indirectX(fetchByte())));
                 return 6;
             }
             case (byte) 0x11 -> { // ORA (nn),Y
-                int indirectAddress = fetchByte();
-                int absoluteAddress = memory.readWord(indirectAddress);
-                int effectiveAddress = absoluteAddress + (y & 0xFF);
-                a |= memory.readByte(effectiveAddress);
-                zero = a == 0;
-                negative = (a & 0x80) != 0;
-                if ((effectiveAddress & 0xFF00) != (absoluteAddress & 0xFF00)) {
-                    return 6;
-                } else {
-                    return 5;
-                }
+                int address = indirectY(fetchByte());
+                ora(bus.readByte(address));
+                return 5 + penalty(address);
+            }
+            case (byte) 0xE8 -> { // INX
+                ldx(x + 1);
+                return 2;
+            }
+            case (byte) 0xC8 -> { // INY
+                ldy(y + 1);
+                return 2;
+            }
+            case (byte) 0xCA -> { // DEX
+                ldx(x - 1);
+                return 2;
+            }
+            case (byte) 0x88 -> { // DEY
+                ldy(y - 1);
+                return 2;
+            }
+            case (byte) 0x10 -> { // BPL nn
+                return 2 + branch(!isNegative(), fetchByte());
+            }
+            case (byte) 0x30 -> { // BMI nn
+                return 2 + branch(isNegative(), fetchByte());
+            }
+            case (byte) 0x50 -> { // BVC nn
+                return 2 + branch(!overflow, fetchByte());
+            }
+            case (byte) 0x70 -> { // BVS nn
+                return 2 + branch(overflow, fetchByte());
+            }
+            case (byte) 0x90 -> { // BCC nn
+                return 2 + branch(!carry, fetchByte());
+            }
+            case (byte) 0xB0 -> { // BCS nn
+                return 2 + branch(carry, fetchByte());
+            }
+            case (byte) 0xD0 -> { // BNE nn
+                return 2 + branch(!isZero(), fetchByte());
+            }
+            case (byte) 0xF0 -> { // BEQ nn
+                return 2 + branch(isZero(), fetchByte());
+            }
+            case (byte) 0x78 -> { // SEI
+                interruptDisabled = true;
+                return 2;
+            }
+            case (byte) 0x58 -> { // CLI
+                interruptDisabled = false;
+                return 2;
+            }
+            case (byte) 0x40 -> { // RTI
+                returnFromInterrupt();
+                return 6;
+            }
+            case (byte) 0x20 -> { // JSR nnnn
+                jumpToSubroutine(fetchWord());
+                return 6;
+            }
+            case (byte) 0x60 -> { // RTS
+                returnFromSubroutine();
+                return 6;
+            }
+            default -> {
+                return ILLEGAL_OPCODE;
             }
-            default -> throw new UnknownOpcodeException(opcode);
         }
     }
 
+    // Addressing-mode resolvers. Indexed modes that can cross a page return the effective address with
+    // PAGE_CROSSED set when they do; memory accesses mask it away and penalty() turns it into the extra cycle.
+
+    int zeroPageX(int base) {
+        return (base + (x & 0xFF)) & 0xFF;
+    }
+
+    int zeroPageY(int base) {
+        return (base + (y & 0xFF)) & 0xFF;
+    }
+
+    int absoluteX(int base) {
+        return indexed(base, x & 0xFF);
+    }
+
+    int absoluteY(int base) {
+        return indexed(base, y & 0xFF);
+    }
+
+    int indirectX(int base) {
+        return readZeroPageWord(zeroPageX(base));
+    }
+
+    int indirectY(int base) {
+        return indexed(readZeroPageWord(base), y & 0xFF);
+    }
+
+    /**
+     * Returns the extra cycle of a read from an indexed address that crossed a page, and counts it.
+     */
+    int penalty(int address) {
+        int penalty = crossedPage(address);
+        pageCrossings += penalty;
+        return penalty;
+    }
+
+    static int crossedPage(int address) {
+        return address >>> 16;
+    }
+
+    static int indexed(int base, int index) {
+        int address = base + index;
+        if (((address ^ base) & 0xFF00) == 0) {
+            return address;
+        }
+        return (address & 0xFFFF) | PAGE_CROSSED;
+    }
+
+    int readZeroPageWord(int address) {
+        int low = bus.readByte(address);
+        int high = bus.readByte((address + 1) & 0xFF);
+        return (high << 8) | low;
+    }
+
+    // Operation kernels.
+
+    void lda(int value) {
+        a = (byte) value;
+        updateZeroNegative(a);
+    }
+
+    void ldx(int value) {
+        x = (byte) value;
+        updateZeroNegative(x);
+    }
+
+    void ldy(int value) {
+        y = (byte) value;
+        updateZeroNegative(y);
+    }
+
+    void updateZeroNegative(byte value) {
+        if (lazyFlags) {
+            flagResult = value;
+        } else {
+            zero = value == 0;
+            negative = value < 0;
+        }
+    }
+
+    /**
+     * Takes a relative branch from the current pc and returns the extra cycles: one when taken, two when the target
+     * is on another page.
+     */
+    int branch(boolean condition, int offset) {
+        if (!condition) {
+            return 0;
+        }
+        int from = pc & 0xFFFF;
+        int target = (from + (byte) offset) & 0xFFFF;
+        pc = (short) target;
+        int extra = ((target ^ from) & 0xFF00) == 0 ? 1 : 2;
+        pageCrossings += extra - 1;
+        if (skippingIdleLoops && target < from) {
+            return extra + idleLoops.taken(from - 2, target);
+        }
+        return extra;
+    }
+
+    /**
+     * Pushes the address of the last byte of the JSR, as the hardware does, and jumps.
+     */
+    void jumpToSubroutine(int address) {
+        int last = (pc - 1) & 0xFFFF;
+        stackPush(last >>> 8);
+        stackPush(last & 0xFF);
+        pc = (short) address;
+    }
+
+    void returnFromSubroutine() {
+        int low = stackPop();
+        pc = (short) ((stackPop() << 8 | low) + 1);
+    }
+
+    void returnFromInterrupt() {
+        setStatus(stackPop());
+        int low = stackPop();
+        pc = (short) (stackPop() << 8 | low);
+    }
+
+    void and(int value) {
+        lda(a & value);
+    }
+
+    void eor(int value) {
+        lda(a ^ value);
+    }
+
+    void ora(int value) {
+        lda(a | value);
+    }
+
+    /**
+     * SWITCH, TABLE and PREDECODE interpret one instruction per step; PREDECODE keeps decoded instructions by address
+     * and dispatches them through the handler table. RECOMPILE runs hot code as compiled basic blocks, so a step can
+     * execute several instructions; run() with a condition still checks it after every instruction.
+     */
+    public enum Dispatch {
+        SWITCH,
+        TABLE,
+        PREDECODE,
+        RECOMPILE
+    }
+
+    public enum StopReason {
+        BUDGET_REACHED,
+        ILLEGAL_OPCODE,
+        BREAKPOINT,
+        WATCHPOINT
+    }
+
     public static class UnknownOpcodeException extends Throwable {
         public UnknownOpcodeException(byte opcode) {
             super(String.format("Unknown opcode: %02X", opcode));
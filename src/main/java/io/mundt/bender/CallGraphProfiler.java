@@ -0,0 +1,216 @@
+package io.mundt.bender;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Attributes cycles to guest subroutines by following JSR, interrupts and the stack pointer. A shadow call stack in
+ * primitive arrays keeps, for each active call, the node of the call tree it is on and the stack pointer at which its
+ * return address is popped off again. A call ends once the stack pointer reaches that point, whichever instruction
+ * moved it: RTS and RTI, but also PLA / PLA discarding a return address or TXS. An RTS used as a jump, with an address
+ * pushed by the subroutine itself, leaves the stack pointer where it was, so it ends no call.
+ * <p>
+ * Each instruction's cycles go to the call active when it started, so a JSR counts for the caller and its RTS for the
+ * callee. Not thread-safe; read it from the thread running the CPU, e.g. when run() returns.
+ */
+public final class CallGraphProfiler {
+    static final int MAX_DEPTH = 256;
+
+    private static final int ROOT = 0;
+
+    // Shadow stack.
+    private final int[] frameNodes = new int[MAX_DEPTH];
+    private final int[] frameEnds = new int[MAX_DEPTH];
+    private final long[] frameStarts = new long[MAX_DEPTH];
+    private int depth;
+
+    // Calls nested deeper than MAX_DEPTH, which are counted for their caller.
+    private int overflow;
+
+    // Call tree: a node per distinct chain of entry addresses from the root, with the cycles spent in it.
+    private int[] nodeParents = new int[64];
+    private int[] nodeAddresses = new int[64];
+    private long[] nodeCycles = new long[64];
+    private int nodeCount;
+
+    // Open addressing table from (parent << 16 | address) + 1 to child node.
+    private long[] childKeys = new long[128];
+    private int[] childNodes = new int[128];
+
+    // Per entry address.
+    private final int[] calls = new int[0x10000];
+    private final long[] inclusiveCycles = new long[0x10000];
+    private final int[] activeCalls = new int[0x10000];
+
+    private long clock;
+
+    public CallGraphProfiler() {
+        clear();
+    }
+
+    /**
+     * Counts an executed instruction. pc and sp are the registers after it.
+     */
+    void executed(int opcode, int pc, int sp, int cycles) {
+        clock += cycles;
+        nodeCycles[depth == 0 ? ROOT : frameNodes[depth - 1]] += cycles;
+        if (opcode == 0x20) { // JSR
+            call(pc, sp + 2);
+        } else {
+            returned(sp);
+        }
+    }
+
+    /**
+     * Starts a call of a handler, whose return address and status are on the stack.
+     */
+    void interrupted(int pc, int sp, int cycles) {
+        call(pc, sp + 3);
+        clock += cycles;
+        nodeCycles[depth == 0 ? ROOT : frameNodes[depth - 1]] += cycles;
+    }
+
+    public int getCalls(int address) {
+        return calls[address & 0xFFFF];
+    }
+
+    /**
+     * Returns the cycles spent in calls of the subroutine and everything they called, for calls that have returned.
+     * A recursive call is counted within the outermost call of the same subroutine.
+     */
+    public long getInclusiveCycles(int address) {
+        return inclusiveCycles[address & 0xFFFF];
+    }
+
+    /**
+     * Returns the cycles spent in the subroutine itself, not in what it called.
+     */
+    public long getExclusiveCycles(int address) {
+        long cycles = 0;
+        for (int node = 1; node < nodeCount; node++) {
+            if (nodeAddresses[node] == (address & 0xFFFF)) {
+                cycles += nodeCycles[node];
+            }
+        }
+        return cycles;
+    }
+
+    public long getTotalCycles() {
+        return clock;
+    }
+
+    public int getDepth() {
+        return depth + overflow;
+    }
+
+    public void clear() {
+        depth = 0;
+        overflow = 0;
+        nodeCount = 1;
+        nodeParents[ROOT] = -1;
+        nodeAddresses[ROOT] = -1;
+        Arrays.fill(nodeCycles, 0);
+        Arrays.fill(childKeys, 0);
+        Arrays.fill(calls, 0);
+        Arrays.fill(inclusiveCycles, 0);
+        Arrays.fill(activeCalls, 0);
+        clock = 0;
+    }
+
+    /**
+     * Writes one line per call chain with the cycles spent in its innermost subroutine, e.g. "root;C000;C1F0 1234",
+     * the collapsed stack format of flame graph tools.
+     */
+    public void writeCollapsed(Appendable out) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int node = 0; node < nodeCount; node++) {
+            if (nodeCycles[node] == 0) {
+                continue;
+            }
+            line.setLength(0);
+            appendPath(line, node);
+            out.append(line).append(' ').append(Long.toString(nodeCycles[node])).append('\n');
+        }
+    }
+
+    private void appendPath(StringBuilder line, int node) {
+        if (node == ROOT) {
+            line.append("root");
+            return;
+        }
+        appendPath(line, nodeParents[node]);
+        line.append(';').append(String.format("%04X", nodeAddresses[node]));
+    }
+
+    private void call(int address, int end) {
+        calls[address]++;
+        if (depth == MAX_DEPTH) {
+            overflow++;
+            return;
+        }
+        int parent = depth == 0 ? ROOT : frameNodes[depth - 1];
+        frameNodes[depth] = child(parent, address);
+        frameEnds[depth] = end;
+        frameStarts[depth] = clock;
+        depth++;
+        activeCalls[address]++;
+    }
+
+    private void returned(int sp) {
+        while (depth > 0 && sp >= frameEnds[depth - 1]) {
+            depth--;
+            int address = nodeAddresses[frameNodes[depth]];
+            if (--activeCalls[address] == 0) {
+                inclusiveCycles[address] += clock - frameStarts[depth];
+            }
+        }
+        if (depth == 0) {
+            overflow = 0;
+        }
+    }
+
+    private int child(int parent, int address) {
+        long key = ((long) parent << 16 | address) + 1;
+        int mask = childKeys.length - 1;
+        int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+        while (childKeys[slot] != 0) {
+            if (childKeys[slot] == key) {
+                return childNodes[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        int node = nodeCount++;
+        if (node == nodeParents.length) {
+            nodeParents = Arrays.copyOf(nodeParents, node * 2);
+            nodeAddresses = Arrays.copyOf(nodeAddresses, node * 2);
+            nodeCycles = Arrays.copyOf(nodeCycles, node * 2);
+        }
+        nodeParents[node] = parent;
+        nodeAddresses[node] = address;
+        nodeCycles[node] = 0;
+        childKeys[slot] = key;
+        childNodes[slot] = node;
+        if (nodeCount * 2 > childKeys.length) {
+            rehash();
+        }
+        return node;
+    }
+
+    private void rehash() {
+        long[] keys = childKeys;
+        int[] nodes = childNodes;
+        childKeys = new long[keys.length * 2];
+        childNodes = new int[keys.length * 2];
+        int mask = childKeys.length - 1;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                int slot = (int) (keys[i] * 0x9E3779B97F4A7C15L >>> 40) & mask;
+                while (childKeys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                childKeys[slot] = keys[i];
+                childNodes[slot] = nodes[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package io.mundt.bender;
+
+/**
+ * Device that is only brought up to date when it is needed: it remembers the cycle it was last synchronized at and
+ * catches up on the elapsed cycles when one of its registers is read or written, or when the deadline it set for
+ * itself arrives. Between those points it costs nothing, however long the CPU runs.
+ * <p>
+ * Register accesses synchronize to the cycle the current instruction started at.
+ * <p>
+ * Snapshots save and restore the cycle a device was synchronized at and its deadline, but not the state of the
+ * device itself.
+ */
+public abstract class CatchUpDevice implements Device {
+    protected final CPU cpu;
+
+    private final Scheduler.Event deadlineEvent = this::deadlineReached;
+
+    private long syncedCycle;
+
+    private boolean deadlineSet;
+
+    protected CatchUpDevice(CPU cpu) {
+        this.cpu = cpu;
+        syncedCycle = cpu.cycles;
+        cpu.catchUpDevices.add(this);
+    }
+
+    @Override
+    public final int readByte(int address) {
+        sync();
+        return read(address);
+    }
+
+    @Override
+    public final void writeByte(int address, int value) {
+        sync();
+        write(address, value);
+    }
+
+    public final void sync() {
+        syncTo(cpu.getInstructionCycle());
+    }
+
+    public final long getSyncedCycle() {
+        return syncedCycle;
+    }
+
+    /**
+     * Advances the device state by the given number of cycles.
+     */
+    protected abstract void catchUp(long cycles);
+
+    protected abstract int read(int address);
+
+    protected abstract void write(int address, int value);
+
+    /**
+     * Called once the device has caught up to its deadline. Does nothing unless overridden.
+     */
+    protected void deadline(long cycle) {
+    }
+
+    /**
+     * Makes the device catch up at the given cycle even if nothing accesses it, e.g. when a timer it models runs
+     * out. Replaces the previous deadline.
+     */
+    protected final void setDeadline(long cycle) {
+        clearDeadline();
+        cpu.scheduler.schedule(cycle, deadlineEvent);
+        deadlineSet = true;
+    }
+
+    protected final void clearDeadline() {
+        if (deadlineSet) {
+            cpu.scheduler.cancel(deadlineEvent);
+            deadlineSet = false;
+        }
+    }
+
+    boolean hasDeadline() {
+        return deadlineSet;
+    }
+
+    /**
+     * Puts the device back to the given point of the timeline, for restoring a snapshot along with the scheduler.
+     */
+    void restoreSync(long syncedCycle, boolean deadlineSet) {
+        this.syncedCycle = syncedCycle;
+        this.deadlineSet = deadlineSet;
+    }
+
+    private void syncTo(long cycle) {
+        if (cycle > syncedCycle) {
+            catchUp(cycle - syncedCycle);
+            syncedCycle = cycle;
+        }
+    }
+
+    private void deadlineReached(long cycle) {
+        deadlineSet = false;
+        syncTo(cycle);
+        deadline(cycle);
+    }
+}
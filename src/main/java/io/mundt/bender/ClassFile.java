@@ -0,0 +1,343 @@
+package io.mundt.bender;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough of a class-file writer for the recompiler: one class, a constant pool and methods whose branches only
+ * jump forward to places with the same locals and an empty stack, so one kind of stack map frame covers them all.
+ */
+final class ClassFile {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int VERSION = 61;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndexes = new HashMap<>();
+    private int poolCount = 1;
+
+    private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+    private final DataOutputStream methodsOut = new DataOutputStream(methods);
+    private int methodCount;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+
+    ClassFile(String name, String superName, String... interfaceNames) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+        interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaces[i] = classRef(interfaceNames[i]);
+        }
+    }
+
+    int utf8(String value) {
+        return constant("U" + value, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    int integer(int value) {
+        return constant("I" + value, out -> {
+            out.writeByte(3);
+            out.writeInt(value);
+        });
+    }
+
+    int classRef(String name) {
+        int nameIndex = utf8(name);
+        return constant("C" + name, out -> {
+            out.writeByte(7);
+            out.writeShort(nameIndex);
+        });
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(10, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(11, owner, name, descriptor);
+    }
+
+    void addMethod(int access, String name, String descriptor, Code code) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int codeIndex = utf8("Code");
+        byte[] bytecode = code.toByteArray();
+        byte[] stackMap = code.stackMapTable();
+        int stackMapIndex = stackMap == null ? 0 : utf8("StackMapTable");
+        write(methodsOut, out -> {
+            out.writeShort(access);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            out.writeShort(1); // attributes
+            out.writeShort(codeIndex);
+            out.writeInt(12 + bytecode.length + (stackMap == null ? 0 : 6 + stackMap.length));
+            out.writeShort(code.maxStack);
+            out.writeShort(code.maxLocals);
+            out.writeInt(bytecode.length);
+            out.write(bytecode);
+            out.writeShort(0); // exception table
+            if (stackMap == null) {
+                out.writeShort(0); // attributes
+            } else {
+                out.writeShort(1);
+                out.writeShort(stackMapIndex);
+                out.writeInt(stackMap.length);
+                out.write(stackMap);
+            }
+        });
+        methodCount++;
+    }
+
+    byte[] toByteArray(int access) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(new DataOutputStream(bytes), out -> {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int index : interfaces) {
+                out.writeShort(index);
+            }
+            out.writeShort(0); // fields
+            out.writeShort(methodCount);
+            methods.writeTo(out);
+            out.writeShort(0); // attributes
+        });
+        return bytes.toByteArray();
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = constant("N" + name + ' ' + descriptor, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return constant("M" + tag + owner + '.' + name + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private int constant(String key, Writer writer) {
+        Integer index = poolIndexes.get(key);
+        if (index == null) {
+            write(poolOut, writer);
+            index = poolCount++;
+            poolIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    private static void write(DataOutputStream out, Writer writer) {
+        try {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Bytecode of one method. Only the instructions the recompiler emits have helpers.
+     */
+    static final class Code {
+        static final int ALOAD = 0x19;
+        static final int ASTORE = 0x3A;
+        static final int ILOAD = 0x15;
+        static final int ISTORE = 0x36;
+        static final int IADD = 0x60;
+        static final int ISUB = 0x64;
+        static final int IAND = 0x7E;
+        static final int IOR = 0x80;
+        static final int IXOR = 0x82;
+        static final int I2B = 0x91;
+        static final int DUP = 0x59;
+        static final int IFEQ = 0x99;
+        static final int IRETURN = 0xAC;
+        static final int RETURN = 0xB1;
+        static final int GETFIELD = 0xB4;
+        static final int PUTFIELD = 0xB5;
+        static final int INVOKEVIRTUAL = 0xB6;
+        static final int INVOKESPECIAL = 0xB7;
+        static final int INVOKESTATIC = 0xB8;
+        static final int INVOKEINTERFACE = 0xB9;
+
+        private final ClassFile classFile;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final int maxStack;
+        private final int maxLocals;
+
+        // Types of the locals at every branch target: "I" or the name of a class.
+        private String[] frameLocals;
+
+        // Offsets of the branch instructions and of their targets.
+        private final List<int[]> jumps = new ArrayList<>();
+
+        Code(ClassFile classFile, int maxStack, int maxLocals) {
+            this.classFile = classFile;
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+        }
+
+        /**
+         * Declares the locals that every branch target sees, with an empty stack.
+         */
+        void frame(String... locals) {
+            frameLocals = locals;
+        }
+
+        /**
+         * Emits a branch and returns it for {@link #land(int)}, which has to follow in the order of the branches.
+         */
+        int jump(int opcode) {
+            int jump = jumps.size();
+            jumps.add(new int[]{bytes.size(), -1});
+            bytes.write(opcode);
+            u2(0);
+            return jump;
+        }
+
+        /**
+         * Makes the branch jump to the current offset.
+         */
+        void land(int jump) {
+            jumps.get(jump)[1] = bytes.size();
+        }
+
+        void op(int opcode) {
+            bytes.write(opcode);
+        }
+
+        void local(int opcode, int index) {
+            bytes.write(opcode);
+            bytes.write(index);
+        }
+
+        void constant(int value) {
+            if (value >= -1 && value <= 5) {
+                bytes.write(0x03 + value); // ICONST_<n>
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                bytes.write(0x10); // BIPUSH
+                bytes.write(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                bytes.write(0x11); // SIPUSH
+                u2(value);
+            } else {
+                bytes.write(0x13); // LDC_W
+                u2(classFile.integer(value));
+            }
+        }
+
+        void field(int opcode, String owner, String name, String descriptor) {
+            bytes.write(opcode);
+            u2(classFile.fieldRef(owner, name, descriptor));
+        }
+
+        void invoke(int opcode, String owner, String name, String descriptor) {
+            bytes.write(opcode);
+            if (opcode == INVOKEINTERFACE) {
+                u2(classFile.interfaceMethodRef(owner, name, descriptor));
+                bytes.write(argumentSlots(descriptor) + 1);
+                bytes.write(0);
+            } else {
+                u2(classFile.methodRef(owner, name, descriptor));
+            }
+        }
+
+        byte[] toByteArray() {
+            byte[] bytecode = bytes.toByteArray();
+            for (int[] jump : jumps) {
+                int offset = jump[1] - jump[0];
+                bytecode[jump[0] + 1] = (byte) (offset >> 8);
+                bytecode[jump[0] + 2] = (byte) offset;
+            }
+            return bytecode;
+        }
+
+        // A full frame at the first branch target and the same locals at the others, or null without branches.
+        byte[] stackMapTable() {
+            if (jumps.isEmpty()) {
+                return null;
+            }
+            ByteArrayOutputStream table = new ByteArrayOutputStream();
+            write(new DataOutputStream(table), out -> {
+                out.writeShort(jumps.size());
+                int previous = -1;
+                for (int[] jump : jumps) {
+                    int delta = jump[1] - previous - 1;
+                    if (previous < 0) {
+                        out.writeByte(255); // full_frame
+                        out.writeShort(delta);
+                        out.writeShort(frameLocals.length);
+                        for (String type : frameLocals) {
+                            if (type.equals("I")) {
+                                out.writeByte(1); // Integer
+                            } else {
+                                out.writeByte(7); // Object
+                                out.writeShort(classFile.classRef(type));
+                            }
+                        }
+                        out.writeShort(0); // stack
+                    } else if (delta < 64) {
+                        out.writeByte(delta); // same_frame
+                    } else {
+                        out.writeByte(251); // same_frame_extended
+                        out.writeShort(delta);
+                    }
+                    previous = jump[1];
+                }
+            });
+            return table.toByteArray();
+        }
+
+        private void u2(int value) {
+            bytes.write(value >> 8);
+            bytes.write(value);
+        }
+
+        // Only counts primitive and reference arguments without arrays, which is all the recompiler passes.
+        private static int argumentSlots(String descriptor) {
+            int slots = 0;
+            for (int i = 1; descriptor.charAt(i) != ')'; i++) {
+                char type = descriptor.charAt(i);
+                if (type == 'L') {
+                    i = descriptor.indexOf(';', i);
+                }
+                slots += type == 'J' || type == 'D' ? 2 : 1;
+            }
+            return slots;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package io.mundt.bender;
+
+import java.util.Arrays;
+
+/**
+ * Decoded instructions by address, kept in two parallel int arrays. An entry packs the index into
+ * OpcodeTable.HANDLERS, which is the opcode unless the entry is a fused pair, the base cycles and the length in bytes;
+ * 0 means not decoded. Entries are dropped when any of their bytes is written, which the CPU learns through the write
+ * watch on their pages.
+ */
+final class DecodeCache {
+    // Longest entry, a fused pair, so a write only affects entries starting less than this many bytes before it.
+    static final int MAX_LENGTH = 6;
+
+    static final int FIRST_FUSED_HANDLER = 0x100;
+
+    final int[] entries = new int[0x10000];
+
+    final int[] operands = new int[0x10000];
+
+    private final CPU cpu;
+
+    // Entries touching each page.
+    private final int[] pageEntryCounts = new int[0x100];
+
+    DecodeCache(CPU cpu) {
+        this.cpu = cpu;
+    }
+
+    static int handler(int entry) {
+        return entry & 0x1FF;
+    }
+
+    static int cycles(int entry) {
+        return (entry >>> 9) & 0xF;
+    }
+
+    static int length(int entry) {
+        return entry >>> 13;
+    }
+
+    /**
+     * Decodes the instruction at the address into the cache, or returns 0 without caching for an unknown opcode. With
+     * fusion on, an instruction followed by one it forms a fused pair with is decoded together with it.
+     */
+    int decode(int address) {
+        int opcode = cpu.plainBus.readByte(address);
+        if (OpcodeTable.HANDLERS[opcode] == null) {
+            return 0;
+        }
+        int handler = opcode;
+        int length = 1 + OpcodeTable.OPERAND_BYTES[opcode];
+        int cycles = OpcodeTable.CYCLES[opcode];
+        int operand = operand(address, length);
+        if (cpu.isFusion()) {
+            int next = cpu.plainBus.readByte(address + length);
+            int fused = OpcodeTable.FUSIONS[opcode << 8 | next];
+            if (fused != 0) {
+                int nextLength = 1 + OpcodeTable.OPERAND_BYTES[next];
+                operand |= operand(address + length, nextLength) << 16;
+                handler = fused;
+                cycles += OpcodeTable.CYCLES[next];
+                length += nextLength;
+            }
+        }
+        int entry = length << 13 | cycles << 9 | handler;
+        entries[address] = entry;
+        operands[address] = operand;
+        addPageEntry(address >>> 8);
+        if (lastPage(address, entry) != address >>> 8) {
+            addPageEntry(lastPage(address, entry));
+        }
+        return entry;
+    }
+
+    void written(int address, int length) {
+        for (int start = address - MAX_LENGTH + 1; start < address + length; start++) {
+            int entry = entries[start & 0xFFFF];
+            if (entry != 0 && start + length(entry) > address) {
+                drop(start & 0xFFFF, entry);
+            }
+        }
+    }
+
+    void clear() {
+        for (int page = 0; page < pageEntryCounts.length; page++) {
+            if (pageEntryCounts[page] > 0) {
+                pageEntryCounts[page] = 0;
+                cpu.unwatchCodePage(page);
+            }
+        }
+        Arrays.fill(entries, 0);
+    }
+
+    private void drop(int address, int entry) {
+        entries[address] = 0;
+        removePageEntry(address >>> 8);
+        if (lastPage(address, entry) != address >>> 8) {
+            removePageEntry(lastPage(address, entry));
+        }
+    }
+
+    private int operand(int address, int length) {
+        return switch (length) {
+            case 2 -> cpu.plainBus.readByte(address + 1);
+            case 3 -> cpu.plainBus.readWord(address + 1);
+            default -> 0;
+        };
+    }
+
+    private static int lastPage(int address, int entry) {
+        return ((address + length(entry) - 1) >>> 8) & 0xFF;
+    }
+
+    private void addPageEntry(int page) {
+        if (pageEntryCounts[page]++ == 0) {
+            cpu.watchCodePage(page);
+        }
+    }
+
+    private void removePageEntry(int page) {
+        if (--pageEntryCounts[page] == 0) {
+            cpu.unwatchCodePage(page);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package io.mundt.bender;
+
+public interface Device {
+    int readByte(int address);
+
+    void writeByte(int address, int value);
+}
@@ -0,0 +1,138 @@
+package io.mundt.bender;
+
+/**
+ * Formats single instructions for traces and debugging output, in the notation of the opcode comments: hex operands,
+ * and branch targets instead of offsets.
+ */
+public final class Disassembler {
+    private static final String[] TEMPLATES = new String[0x100];
+
+    static {
+        define(0x01, "ORA (nn,X)");
+        define(0x05, "ORA nn");
+        define(0x08, "PHP");
+        define(0x09, "ORA #nn");
+        define(0x0D, "ORA nnnn");
+        define(0x10, "BPL nn");
+        define(0x11, "ORA (nn),Y");
+        define(0x15, "ORA nn,X");
+        define(0x19, "ORA nnnn,Y");
+        define(0x1D, "ORA nnnn,X");
+        define(0x20, "JSR nnnn");
+        define(0x21, "AND (nn,X)");
+        define(0x25, "AND nn");
+        define(0x28, "PLP");
+        define(0x29, "AND #nn");
+        define(0x2D, "AND nnnn");
+        define(0x30, "BMI nn");
+        define(0x31, "AND (nn),Y");
+        define(0x35, "AND nn,X");
+        define(0x39, "AND nnnn,Y");
+        define(0x3D, "AND nnnn,X");
+        define(0x40, "RTI");
+        define(0x41, "EOR (nn,X)");
+        define(0x45, "EOR nn");
+        define(0x48, "PHA");
+        define(0x49, "EOR #nn");
+        define(0x4D, "EOR nnnn");
+        define(0x50, "BVC nn");
+        define(0x51, "EOR (nn),Y");
+        define(0x55, "EOR nn,X");
+        define(0x58, "CLI");
+        define(0x59, "EOR nnnn,Y");
+        define(0x5D, "EOR nnnn,X");
+        define(0x60, "RTS");
+        define(0x68, "PLA");
+        define(0x70, "BVS nn");
+        define(0x78, "SEI");
+        define(0x81, "STA (nn,X)");
+        define(0x84, "STY nn");
+        define(0x85, "STA nn");
+        define(0x86, "STX nn");
+        define(0x88, "DEY");
+        define(0x8A, "TXA");
+        define(0x8C, "STY nnnn");
+        define(0x8D, "STA nnnn");
+        define(0x8E, "STX nnnn");
+        define(0x90, "BCC nn");
+        define(0x91, "STA (nn),Y");
+        define(0x94, "STY nn,X");
+        define(0x95, "STA nn,X");
+        define(0x96, "STX nn,Y");
+        define(0x98, "TYA");
+        define(0x99, "STA nnnn,Y");
+        define(0x9A, "TXS");
+        define(0x9D, "STA nnnn,X");
+        define(0xA0, "LDY #nn");
+        define(0xA1, "LDA (nn,X)");
+        define(0xA2, "LDX #nn");
+        define(0xA4, "LDY nn");
+        define(0xA5, "LDA nn");
+        define(0xA6, "LDX nn");
+        define(0xA8, "TAY");
+        define(0xA9, "LDA #nn");
+        define(0xAA, "TAX");
+        define(0xAC, "LDY nnnn");
+        define(0xAD, "LDA nnnn");
+        define(0xAE, "LDX nnnn");
+        define(0xB0, "BCS nn");
+        define(0xB1, "LDA (nn),Y");
+        define(0xB4, "LDY nn,X");
+        define(0xB5, "LDA nn,X");
+        define(0xB6, "LDX nn,Y");
+        define(0xB9, "LDA nnnn,Y");
+        define(0xBA, "TSX");
+        define(0xBC, "LDY nnnn,X");
+        define(0xBD, "LDA nnnn,X");
+        define(0xBE, "LDX nnnn,Y");
+        define(0xC8, "INY");
+        define(0xCA, "DEX");
+        define(0xD0, "BNE nn");
+        define(0xE8, "INX");
+        define(0xF0, "BEQ nn");
+    }
+
+    private Disassembler() {
+    }
+
+    /**
+     * Returns the operand bytes following the opcode, or -1 for an opcode the CPU does not know.
+     */
+    public static int operandBytes(int opcode) {
+        String template = TEMPLATES[opcode & 0xFF];
+        if (template == null) {
+            return -1;
+        }
+        return template.contains("nnnn") ? 2 : template.contains("nn") ? 1 : 0;
+    }
+
+    /**
+     * Returns the instruction in the notation of the opcode comments, e.g. "LDA nnnn,X", or "???" if unknown.
+     */
+    public static String template(int opcode) {
+        String template = TEMPLATES[opcode & 0xFF];
+        return template != null ? template : "???";
+    }
+
+    /**
+     * Formats the instruction at pc; operand holds its operand bytes, low byte first.
+     */
+    public static String format(int pc, int opcode, int operand) {
+        String template = TEMPLATES[opcode & 0xFF];
+        if (template == null) {
+            return String.format(".byte $%02X", opcode & 0xFF);
+        }
+        if (template.contains("nnnn")) {
+            return template.replace("nnnn", String.format("$%04X", operand & 0xFFFF));
+        }
+        if ((opcode & 0x1F) == 0x10) { // relative branch
+            int target = (pc + 2 + (byte) operand) & 0xFFFF;
+            return template.replace("nn", String.format("$%04X", target));
+        }
+        return template.replace("nn", String.format("$%02X", operand & 0xFF));
+    }
+
+    private static void define(int opcode, String template) {
+        TEMPLATES[opcode] = template;
+    }
+}
@@ -0,0 +1,129 @@
+package io.mundt.bender;
+
+/**
+ * Recognizes polling loops: a backward branch closing a short body that writes nothing, taken twice in a row with the
+ * same registers, flags and cycles per iteration. Every later iteration is identical until something outside the CPU
+ * changes what the loop reads, so the CPU may skip iterations up to its deadline.
+ */
+final class IdleLoopDetector {
+    // Longest loop body that is scanned, in bytes.
+    static final int MAX_BODY = 32;
+
+    private final CPU cpu;
+
+    private int loopStart = -1;
+    private int loopBranch;
+
+    // Instructions per iteration of the loop, the branch included.
+    private int loopInstructions;
+
+    // Last loop whose body failed the scan, so it is not scanned again on every iteration.
+    private int rejectedStart = -1;
+    private int rejectedBranch;
+
+    // State at the previous time the branch was taken.
+    private long cycles;
+    private int pageCrossings;
+    private int iterationCycles;
+    private byte a, x, y, sp;
+    private int status;
+
+    IdleLoopDetector(CPU cpu) {
+        this.cpu = cpu;
+    }
+
+    /**
+     * Forgets the loops seen so far, so skipping starts over with two matching iterations. The CPU calls it at the
+     * start of each run(), as registers and memory may have been changed in between.
+     */
+    void reset() {
+        loopStart = -1;
+        rejectedStart = -1;
+    }
+
+    /**
+     * Called when the branch at {@code branch} is taken back to {@code target}. Returns the cycles of the whole
+     * iterations that can be skipped before the deadline, or 0.
+     */
+    int taken(int branch, int target) {
+        long now = cpu.cycles;
+        if (target != loopStart || branch != loopBranch) {
+            if (target == rejectedStart && branch == rejectedBranch) {
+                return 0;
+            }
+            int instructions = instructionsIfIdle(target, branch);
+            if (instructions == 0) {
+                rejectedStart = target;
+                rejectedBranch = branch;
+                return 0;
+            }
+            loopStart = target;
+            loopBranch = branch;
+            loopInstructions = instructions;
+            iterationCycles = 0;
+            remember(now);
+            return 0;
+        }
+        int delta = (int) (now - cycles);
+        if (delta <= 0 || !sameState() || delta != iterationCycles) {
+            iterationCycles = delta;
+            remember(now);
+            return 0;
+        }
+        // One iteration fewer than fits, so the run ends on exactly the instruction it would have ended on.
+        long iterations = (cpu.deadline - now) / delta - 1;
+        if (iterations <= 0) {
+            remember(now);
+            return 0;
+        }
+        int skippedIterations = (int) Math.min(iterations, Integer.MAX_VALUE / 2 / delta);
+        int skipped = skippedIterations * delta;
+        cpu.extraInstructions += skippedIterations * loopInstructions;
+        cpu.pageCrossings += skippedIterations * (cpu.pageCrossings - pageCrossings);
+        pageCrossings = cpu.pageCrossings;
+        cycles = now + skipped; // the next iteration starts out exactly like this one
+        return skipped;
+    }
+
+    // Returns the instructions of the loop, the branch included, or 0 if its body may write memory.
+    private int instructionsIfIdle(int start, int branch) {
+        if (branch - start >= MAX_BODY || branch < start) {
+            return 0;
+        }
+        int address = start;
+        int instructions = 1;
+        while (address < branch) {
+            int opcode = cpu.plainBus.readByte(address);
+            if (OpcodeTable.HANDLERS[opcode] == null || writesMemory(opcode)) {
+                return 0;
+            }
+            address += 1 + OpcodeTable.OPERAND_BYTES[opcode];
+            instructions++;
+        }
+        return address == branch ? instructions : 0;
+    }
+
+    private static boolean writesMemory(int opcode) {
+        return switch (opcode) {
+            case 0x85, 0x95, 0x8D, 0x9D, 0x99, 0x81, 0x91, // STA
+                    0x86, 0x96, 0x8E, // STX
+                    0x84, 0x94, 0x8C, // STY
+                    0x48, 0x08, 0x20 -> true; // PHA, PHP, JSR
+            default -> false;
+        };
+    }
+
+    private boolean sameState() {
+        return cpu.a == a && cpu.x == x && cpu.y == y && cpu.sp == sp && cpu.getStatus() == status;
+    }
+
+    private void remember(long now) {
+        cycles = now;
+        pageCrossings = cpu.pageCrossings;
+        a = cpu.a;
+        x = cpu.x;
+        y = cpu.y;
+        sp = cpu.sp;
+        status = cpu.getStatus();
+    }
+}
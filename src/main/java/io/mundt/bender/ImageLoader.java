@@ -0,0 +1,116 @@
+package io.mundt.bender;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class ImageLoader {
+    private ImageLoader() {
+    }
+
+    public static void loadBinary(Bus bus, int address, Path file) throws IOException {
+        byte[] image = Files.readAllBytes(file);
+        bus.load(address, image, 0, image.length);
+    }
+
+    public static void loadRom(PageTableBus bus, int firstPage, Path file) throws IOException {
+        bus.mapRom(firstPage, Files.readAllBytes(file));
+    }
+
+    /**
+     * Maps a raw ROM dump into the bus without copying it. The file is mapped read-only, so every instance mapping
+     * the same dump shares the operating system's pages.
+     */
+    public static void mapRom(PageTableBus bus, int firstPage, Path file) throws IOException {
+        bus.mapRom(firstPage, map(file));
+    }
+
+    public static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Loads the data records of an Intel HEX file and returns the start address it declares, or -1 if it declares
+     * none. Extended address records are honoured but addresses wrap around the 64K address space.
+     */
+    public static int loadIntelHex(Bus bus, Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            return loadIntelHex(bus, reader);
+        }
+    }
+
+    public static int loadIntelHex(Bus bus, BufferedReader reader) throws IOException {
+        int base = 0;
+        int start = -1;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            byte[] record = parseRecord(line, lineNumber);
+            int length = record[0] & 0xFF;
+            int address = ((record[1] & 0xFF) << 8) | (record[2] & 0xFF);
+            int type = record[3] & 0xFF;
+            int expected = switch (type) {
+                case 0x01 -> 0;
+                case 0x02, 0x04 -> 2;
+                case 0x03, 0x05 -> 4;
+                default -> length;
+            };
+            if (length != expected) {
+                throw new IOException(String.format("Line %d: record type %02X needs %d data bytes, not %d",
+                        lineNumber, type, expected, length));
+            }
+            switch (type) {
+                case 0x00 -> bus.load(base + address, record, 4, length);
+                case 0x01 -> {
+                    return start;
+                }
+                case 0x02 -> base = word(record, 4) << 4;
+                case 0x03 -> start = word(record, 6);
+                case 0x04 -> base = word(record, 4) << 16;
+                case 0x05 -> start = word(record, 6);
+                default -> throw new IOException(String.format("Line %d: unknown record type %02X", lineNumber, type));
+            }
+        }
+        throw new IOException("Missing end of file record");
+    }
+
+    private static byte[] parseRecord(String line, int lineNumber) throws IOException {
+        if (line.charAt(0) != ':' || line.length() < 11 || line.length() % 2 == 0) {
+            throw new IOException("Line " + lineNumber + ": malformed record");
+        }
+        byte[] record = new byte[(line.length() - 1) / 2];
+        int checksum = 0;
+        for (int i = 0; i < record.length; i++) {
+            int high = Character.digit(line.charAt(1 + i * 2), 16);
+            int low = Character.digit(line.charAt(2 + i * 2), 16);
+            if (high < 0 || low < 0) {
+                throw new IOException("Line " + lineNumber + ": invalid hex digit");
+            }
+            record[i] = (byte) ((high << 4) | low);
+            checksum += record[i];
+        }
+        if ((record[0] & 0xFF) != record.length - 5) {
+            throw new IOException("Line " + lineNumber + ": length mismatch");
+        }
+        if ((checksum & 0xFF) != 0) {
+            throw new IOException("Line " + lineNumber + ": checksum mismatch");
+        }
+        return record;
+    }
+
+    private static int word(byte[] record, int offset) {
+        return ((record[offset] & 0xFF) << 8) | (record[offset + 1] & 0xFF);
+    }
+}
@@ -0,0 +1,89 @@
+package io.mundt.bender;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Ring buffer holding the last instructions a CPU executed, with the registers before each of them. Records are
+ * packed into two longs of a preallocated array, so recording allocates nothing:
+ * <ul>
+ * <li>the low 48 bits of the cycle count, SP and P</li>
+ * <li>PC, the opcode, up to two operand bytes, A, X and Y</li>
+ * </ul>
+ * Not thread-safe; dump it from the thread running the CPU, e.g. when run() returns. TraceDecoder turns a dump into
+ * disassembly.
+ */
+public final class InstructionTrace {
+    static final int MAGIC = 0x42545243; // "BTRC"
+
+    private final long[] records;
+
+    private final int mask;
+
+    private long count;
+
+    /**
+     * Creates a trace keeping the last {@code capacity} instructions, rounded up to a power of two.
+     */
+    public InstructionTrace(int capacity) {
+        if (capacity < 1 || capacity > 1 << 29) {
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        mask = Math.max(size, 1) - 1;
+        records = new long[(mask + 1) * 2];
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the number of instructions held, at most the capacity.
+     */
+    public int size() {
+        return (int) Math.min(count, mask + 1);
+    }
+
+    /**
+     * Returns the number of instructions recorded since the trace was created or cleared.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    void record(CPU cpu) {
+        int pc = cpu.pc & 0xFFFF;
+        int opcode = cpu.plainBus.readByte(pc);
+        int operand = switch (OpcodeTable.OPERAND_BYTES[opcode]) {
+            case 1 -> cpu.plainBus.readByte(pc + 1);
+            case 2 -> cpu.plainBus.readWord(pc + 1);
+            default -> 0;
+        };
+        int index = (int) (count++ & mask) << 1;
+        records[index] = cpu.cycles << 16 | (cpu.sp & 0xFF) << 8 | cpu.getStatus();
+        records[index + 1] = (long) pc << 48 | (long) opcode << 40 | (long) operand << 24
+                | (cpu.a & 0xFF) << 16 | (cpu.x & 0xFF) << 8 | cpu.y & 0xFF;
+    }
+
+    /**
+     * Writes the magic number, the number of records and the records, oldest first.
+     */
+    public void dump(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        int size = size();
+        data.writeInt(MAGIC);
+        data.writeInt(size);
+        for (long i = count - size; i < count; i++) {
+            int index = (int) (i & mask) << 1;
+            data.writeLong(records[index]);
+            data.writeLong(records[index + 1]);
+        }
+        data.flush();
+    }
+}
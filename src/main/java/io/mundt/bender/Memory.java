@@ -1,26 +1,203 @@
 package io.mundt.bender;
 
-public class Memory {
+public class Memory implements Bus {
+    private static final int PAGES = 0x100;
+
+    private static final int PAGE_SIZE = 0x100;
+
     private final byte[] data = new byte[64 * 1024];
 
+    // Pages whose next write has to go through beforeWrite() first: they have to be saved into the latest checkpoint,
+    // are still clean while dirty tracking is on, or are watched.
+    private final boolean[] guardedPages = new boolean[PAGES];
+
+    // Most recent checkpoint; it receives the old contents of every page first written after it was taken.
+    private Checkpoint latest;
+
+    private boolean dirtyTracking;
+
+    // One bit per page, set on the first write after tracking was enabled or the bitmap was cleared.
+    private final long[] dirtyPages = new long[PAGES / 64];
+
+    private final boolean[] watchedPages = new boolean[PAGES];
+
+    private WriteWatcher watcher;
+
+    @Override
     public int readByte(int address) {
         return data[address & 0xFFFF] & 0xFF;
     }
 
+    @Override
     public void writeByte(int address, int value) {
-        data[address & 0xFFFF] = (byte) value;
+        address &= 0xFFFF;
+        if (guardedPages[address >>> 8]) {
+            beforeWrite(address, 1);
+        }
+        data[address] = (byte) value;
     }
 
+    @Override
     public int readWord(int address) {
         int low = data[address & 0xFFFF] & 0xFF;
-        int high = data[(address & 0xFFFF) + 1] & 0xFF;
-        return ((high << 8) | low) & 0xFFFF;
+        int high = data[(address + 1) & 0xFFFF] & 0xFF;
+        return (high << 8) | low;
     }
 
+    @Override
     public void writeWord(int address, int value) {
-        byte low = (byte) value;
-        byte high = (byte) (value >> 8);
-        data[address & 0xFFFF] = low;
-        data[(address & 0xFFFF) + 1] = high;
+        writeByte(address, value);
+        writeByte(address + 1, value >> 8);
+    }
+
+    @Override
+    public void load(int address, byte[] data, int offset, int length) {
+        while (length > 0) {
+            int start = address & 0xFFFF;
+            int chunk = Math.min(length, PAGE_SIZE - (start & 0xFF));
+            if (guardedPages[start >>> 8]) {
+                beforeWrite(start, chunk);
+            }
+            System.arraycopy(data, offset, this.data, start, chunk);
+            address += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    @Override
+    public boolean setWriteWatcher(WriteWatcher watcher) {
+        this.watcher = watcher;
+        return true;
+    }
+
+    /**
+     * Watched pages keep their write guard, so only writes to them pay for the watcher.
+     */
+    @Override
+    public void watchPage(int page, boolean watched) {
+        watchedPages[page] = watched;
+        updateGuard(page);
+    }
+
+    public boolean isDirtyTracking() {
+        return dirtyTracking;
+    }
+
+    /**
+     * Enables or disables dirty-page tracking. Only the first write to a clean page takes the slow path, so tracking
+     * costs nothing once a page is dirty and nothing at all while disabled. Disabling keeps the current bitmap.
+     */
+    public void setDirtyTracking(boolean dirtyTracking) {
+        this.dirtyTracking = dirtyTracking;
+        for (int page = 0; page < PAGES; page++) {
+            updateGuard(page);
+        }
+    }
+
+    public boolean isPageDirty(int page) {
+        return (dirtyPages[page >>> 6] & 1L << page) != 0;
+    }
+
+    /**
+     * Returns a copy of the dirty-page bitmap: bit {@code page & 63} of word {@code page >>> 6} is set for every dirty
+     * page.
+     */
+    public long[] getDirtyPages() {
+        return dirtyPages.clone();
+    }
+
+    public void clearDirtyPages() {
+        for (int i = 0; i < dirtyPages.length; i++) {
+            for (long bits = dirtyPages[i]; bits != 0; bits = dirtyPages[i]) {
+                dirtyPages[i] = bits & bits - 1;
+                updateGuard(i * 64 + Long.numberOfTrailingZeros(bits));
+            }
+        }
+    }
+
+    /**
+     * Starts a new checkpoint. Nothing is copied now: a page is copied into the checkpoint the first time it is
+     * written afterwards, so taking a checkpoint only has to re-arm the pages written since the previous one.
+     */
+    Checkpoint checkpoint() {
+        Checkpoint checkpoint = new Checkpoint(this);
+        if (latest == null) {
+            for (int page = 0; page < PAGES; page++) {
+                guardedPages[page] = true;
+            }
+        } else {
+            for (int i = 0; i < latest.savedPageCount; i++) {
+                guardedPages[latest.savedPages[i]] = true;
+            }
+            latest.next = checkpoint;
+        }
+        latest = checkpoint;
+        return checkpoint;
+    }
+
+    /**
+     * Brings memory back to the state of the checkpoint by copying back only the pages written since it was taken.
+     * The pages overwritten here are preserved like any other write, so later checkpoints remain restorable.
+     */
+    void restore(Checkpoint checkpoint) {
+        if (checkpoint.memory != this) {
+            throw new IllegalArgumentException("Checkpoint belongs to another memory");
+        }
+        boolean[] restored = new boolean[PAGES];
+        for (Checkpoint c = checkpoint; c != null; c = c.next) {
+            for (int i = 0; i < c.savedPageCount; i++) {
+                int page = c.savedPages[i];
+                if (!restored[page]) {
+                    restored[page] = true;
+                    if (guardedPages[page]) {
+                        beforeWrite(page * PAGE_SIZE, PAGE_SIZE);
+                    }
+                    System.arraycopy(c.pages[page], 0, data, page * PAGE_SIZE, PAGE_SIZE);
+                }
+            }
+        }
+    }
+
+    private boolean needsSaving(int page) {
+        return latest != null && latest.pages[page] == null;
+    }
+
+    private void updateGuard(int page) {
+        guardedPages[page] = needsSaving(page) || dirtyTracking && !isPageDirty(page) || watchedPages[page];
+    }
+
+    private void beforeWrite(int address, int length) {
+        int page = address >>> 8;
+        if (needsSaving(page)) {
+            byte[] saved = new byte[PAGE_SIZE];
+            System.arraycopy(data, page * PAGE_SIZE, saved, 0, PAGE_SIZE);
+            latest.pages[page] = saved;
+            latest.savedPages[latest.savedPageCount++] = page;
+        }
+        if (dirtyTracking) {
+            dirtyPages[page >>> 6] |= 1L << page;
+        }
+        if (watchedPages[page]) {
+            watcher.written(address, length);
+        }
+        guardedPages[page] = watchedPages[page];
+    }
+
+    static final class Checkpoint {
+        private final Memory memory;
+
+        // Contents of each page at the time of the checkpoint, or null if it was not written before the next one.
+        private final byte[][] pages = new byte[PAGES][];
+
+        private final int[] savedPages = new int[PAGES];
+
+        private int savedPageCount;
+
+        private Checkpoint next;
+
+        private Checkpoint(Memory memory) {
+            this.memory = memory;
+        }
     }
 }
@@ -0,0 +1,172 @@
+package io.mundt.bender;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Read, write and execute counts for every address, and the deepest the stack got. CPU.setHeatmap() puts a counting
+ * bus in front of the CPU's bus and takes it away again, so a CPU without a heatmap runs on its bus as before.
+ * <p>
+ * Reads include those of the CPU itself, such as opcode and operand fetches, but not those of decoding, compiling and
+ * tracing. Not thread-safe; read it from the thread running the CPU, e.g. when run() returns.
+ */
+public final class MemoryHeatmap {
+    private static final String SHADES = " .:-=+*#%@";
+
+    private final long[] reads = new long[0x10000];
+
+    private final long[] writes = new long[0x10000];
+
+    private final long[] executes = new long[0x10000];
+
+    // Lowest stack pointer seen after an instruction; the stack is empty at 0xFF.
+    private int lowestStackPointer = 0xFF;
+
+    public long getReads(int address) {
+        return reads[address & 0xFFFF];
+    }
+
+    public long getWrites(int address) {
+        return writes[address & 0xFFFF];
+    }
+
+    public long getExecutes(int address) {
+        return executes[address & 0xFFFF];
+    }
+
+    /**
+     * Returns the most bytes the stack held at an instruction boundary.
+     */
+    public int getMaxStackDepth() {
+        return 0xFF - lowestStackPointer;
+    }
+
+    public long[] getPageReads() {
+        return pages(reads);
+    }
+
+    public long[] getPageWrites() {
+        return pages(writes);
+    }
+
+    public long[] getPageExecutes() {
+        return pages(executes);
+    }
+
+    public void clear() {
+        Arrays.fill(reads, 0);
+        Arrays.fill(writes, 0);
+        Arrays.fill(executes, 0);
+        lowestStackPointer = 0xFF;
+    }
+
+    /**
+     * Writes a grid of the 256 pages for reads, writes and executes, a row per 16 pages. Each page is shaded from ' '
+     * for untouched to '@' for the busiest page of its grid, on a logarithmic scale.
+     */
+    public void writeHeatmap(Appendable out) throws IOException {
+        writeGrid(out, "reads", getPageReads());
+        writeGrid(out, "writes", getPageWrites());
+        writeGrid(out, "executes", getPageExecutes());
+        out.append(String.format("max stack depth %d\n", getMaxStackDepth()));
+    }
+
+    /**
+     * Writes "page,reads,writes,executes" and a line per page that was accessed.
+     */
+    public void writePages(Appendable out) throws IOException {
+        long[] pageReads = getPageReads();
+        long[] pageWrites = getPageWrites();
+        long[] pageExecutes = getPageExecutes();
+        out.append("page,reads,writes,executes\n");
+        for (int page = 0; page < 0x100; page++) {
+            if (pageReads[page] != 0 || pageWrites[page] != 0 || pageExecutes[page] != 0) {
+                out.append(String.format("%02X,%d,%d,%d\n", page, pageReads[page], pageWrites[page],
+                        pageExecutes[page]));
+            }
+        }
+    }
+
+    void executed(int pc, int sp) {
+        executes[pc]++;
+        if (sp < lowestStackPointer) {
+            lowestStackPointer = sp;
+        }
+    }
+
+    Bus instrument(Bus bus) {
+        return new CountingBus(bus);
+    }
+
+    static Bus uninstrumented(Bus bus) {
+        return bus instanceof CountingBus counting ? counting.bus : bus;
+    }
+
+    private static long[] pages(long[] counts) {
+        long[] pages = new long[0x100];
+        for (int address = 0; address < counts.length; address++) {
+            pages[address >>> 8] += counts[address];
+        }
+        return pages;
+    }
+
+    private static void writeGrid(Appendable out, String title, long[] pages) throws IOException {
+        long max = Arrays.stream(pages).max().orElse(0);
+        out.append(title).append('\n');
+        out.append("    0123456789ABCDEF\n");
+        for (int row = 0; row < 0x10; row++) {
+            out.append(String.format("%X0  ", row));
+            for (int column = 0; column < 0x10; column++) {
+                out.append(shade(pages[row << 4 | column], max));
+            }
+            out.append('\n');
+        }
+    }
+
+    private static char shade(long count, long max) {
+        if (count == 0) {
+            return SHADES.charAt(0);
+        }
+        int steps = SHADES.length() - 1;
+        int step = (int) Math.ceil(steps * Math.log1p(count) / Math.log1p(max));
+        return SHADES.charAt(Math.max(1, Math.min(steps, step)));
+    }
+
+    private final class CountingBus implements Bus {
+        final Bus bus;
+
+        CountingBus(Bus bus) {
+            this.bus = bus;
+        }
+
+        @Override
+        public int readByte(int address) {
+            reads[address & 0xFFFF]++;
+            return bus.readByte(address);
+        }
+
+        @Override
+        public void writeByte(int address, int value) {
+            writes[address & 0xFFFF]++;
+            bus.writeByte(address, value);
+        }
+
+        @Override
+        public void load(int address, byte[] data, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                writes[(address + i) & 0xFFFF]++;
+            }
+            bus.load(address, data, offset, length);
+        }
+
+        @Override
+        public boolean setWriteWatcher(WriteWatcher watcher) {
+            return bus.setWriteWatcher(watcher);
+        }
+
+        @Override
+        public void watchPage(int page, boolean watched) {
+            bus.watchPage(page, watched);
+        }
+    }
+}
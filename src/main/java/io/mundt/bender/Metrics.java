@@ -0,0 +1,213 @@
+package io.mundt.bender;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Running totals of one CPU for monitoring. run() adds to them once per slice, from counters it keeps in locals, and
+ * step() once per instruction, so they cost nothing per instruction in run(). While metrics are set, run() ends its
+ * slices after at most PUBLISH_QUANTUM cycles, so the totals also move during long runs without events. Other threads
+ * read them at any time. register() publishes them as a JMX MBean and as a MetricsEvent every period of a flight
+ * recording that enables it; rates are computed by those readers from the change in the totals, so the CPU never looks
+ * at the clock. The page-cross penalty rate is the share of instructions that took an extra cycle for an indexed read
+ * or a branch crossing a page.
+ * <p>
+ * Instructions include every one of a compiled block or fused pair and of skipped idle loop iterations.
+ */
+public final class Metrics implements MetricsMXBean {
+    private static final VarHandle TOTALS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final int CYCLES = 0;
+    private static final int INSTRUCTIONS = 1;
+    private static final int INTERRUPTS = 2;
+    private static final int ILLEGAL_OPCODE_STOPS = 3;
+    private static final int PAGE_CROSS_PENALTIES = 4;
+
+    // Most cycles run() goes without adding to the totals, a fraction of a millisecond at the speeds it runs at.
+    static final long PUBLISH_QUANTUM = 1 << 16;
+
+    private static final long RATE_PERIOD = 1_000_000_000;
+
+    // Only written by the thread running the CPU, through TOTALS, and read through it by others.
+    private final long[] totals = new long[5];
+
+    private final Runnable emitter = this::emit;
+
+    private final Window eventWindow = new Window();
+
+    private final Window rateWindow = new Window();
+
+    private double emulatedMHz;
+
+    private double instructionsPerSecond;
+
+    private double pageCrossPenaltyRate;
+
+    private ObjectName objectName;
+
+    private String name;
+
+    @Override
+    public long getCycles() {
+        return total(CYCLES);
+    }
+
+    @Override
+    public long getInstructions() {
+        return total(INSTRUCTIONS);
+    }
+
+    @Override
+    public long getInterrupts() {
+        return total(INTERRUPTS);
+    }
+
+    @Override
+    public long getIllegalOpcodeStops() {
+        return total(ILLEGAL_OPCODE_STOPS);
+    }
+
+    @Override
+    public long getPageCrossPenalties() {
+        return total(PAGE_CROSS_PENALTIES);
+    }
+
+    @Override
+    public synchronized double getEmulatedMHz() {
+        updateRates();
+        return emulatedMHz;
+    }
+
+    @Override
+    public synchronized double getInstructionsPerSecond() {
+        updateRates();
+        return instructionsPerSecond;
+    }
+
+    @Override
+    public synchronized double getPageCrossPenaltyRate() {
+        updateRates();
+        return pageCrossPenaltyRate;
+    }
+
+    /**
+     * Registers the MBean as io.mundt.bender:type=CPU,name=... with the platform MBean server and starts emitting
+     * MetricsEvent for recordings that enable it.
+     */
+    public synchronized void register(String name) {
+        if (objectName != null) {
+            throw new IllegalStateException("Already registered as " + objectName);
+        }
+        try {
+            ObjectName objectName = new ObjectName("io.mundt.bender:type=CPU,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics of " + name, e);
+        }
+        this.name = name;
+        FlightRecorder.addPeriodicEvent(MetricsEvent.class, emitter);
+    }
+
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        FlightRecorder.removePeriodicEvent(emitter);
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister " + objectName, e);
+        } finally {
+            objectName = null;
+        }
+    }
+
+    void ran(long cycles, long instructions, long interrupts, long pageCrossPenalties) {
+        add(CYCLES, cycles);
+        add(INSTRUCTIONS, instructions);
+        if (interrupts != 0) {
+            add(INTERRUPTS, interrupts);
+        }
+        if (pageCrossPenalties != 0) {
+            add(PAGE_CROSS_PENALTIES, pageCrossPenalties);
+        }
+    }
+
+    void stoppedAtIllegalOpcode() {
+        add(ILLEGAL_OPCODE_STOPS, 1);
+    }
+
+    private void add(int index, long delta) {
+        TOTALS.setOpaque(totals, index, (long) TOTALS.getOpaque(totals, index) + delta);
+    }
+
+    private long total(int index) {
+        return (long) TOTALS.getOpaque(totals, index);
+    }
+
+    private void updateRates() {
+        long now = System.nanoTime();
+        long elapsed = now - rateWindow.start;
+        if (elapsed >= RATE_PERIOD) {
+            long[] current = snapshot();
+            emulatedMHz = rateWindow.change(current, CYCLES) * 1e3 / elapsed;
+            instructionsPerSecond = rateWindow.change(current, INSTRUCTIONS) * 1e9 / elapsed;
+            pageCrossPenaltyRate = rate(rateWindow.change(current, PAGE_CROSS_PENALTIES),
+                    rateWindow.change(current, INSTRUCTIONS));
+            rateWindow.restart(now, current);
+        }
+    }
+
+    private synchronized void emit() {
+        long now = System.nanoTime();
+        long elapsed = Math.max(1, now - eventWindow.start);
+        long[] current = snapshot();
+        MetricsEvent event = new MetricsEvent();
+        event.name = name;
+        event.cycles = eventWindow.change(current, CYCLES);
+        event.instructions = eventWindow.change(current, INSTRUCTIONS);
+        event.interrupts = eventWindow.change(current, INTERRUPTS);
+        event.illegalOpcodeStops = eventWindow.change(current, ILLEGAL_OPCODE_STOPS);
+        event.pageCrossPenalties = eventWindow.change(current, PAGE_CROSS_PENALTIES);
+        event.emulatedMHz = event.cycles * 1e3 / elapsed;
+        event.instructionsPerSecond = event.instructions * 1e9 / elapsed;
+        event.pageCrossPenaltyRate = rate(event.pageCrossPenalties, event.instructions);
+        event.commit();
+        eventWindow.restart(now, current);
+    }
+
+    // Penalties per instruction, 0 when no instruction ran.
+    private static double rate(long penalties, long instructions) {
+        return instructions == 0 ? 0 : (double) penalties / instructions;
+    }
+
+    private long[] snapshot() {
+        long[] current = new long[totals.length];
+        for (int index = 0; index < current.length; index++) {
+            current[index] = total(index);
+        }
+        return current;
+    }
+
+    // Totals at the start of the period a reader takes rates over.
+    private static final class Window {
+        long start = System.nanoTime();
+        long[] totals = new long[5];
+
+        long change(long[] current, int index) {
+            return current[index] - totals[index];
+        }
+
+        void restart(long now, long[] current) {
+            start = now;
+            totals = current;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.mundt.bender;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * What a CPU did since the previous event for it, emitted periodically while a flight recording enables it.
+ */
+@Name("io.mundt.bender.CPU")
+@Label("Emulated CPU")
+@Category("Bender")
+@Description("Cycles, instructions, interrupts, illegal opcode stops and page-cross penalties of an emulated CPU since "
+        + "the last event")
+@Period("1 s")
+@StackTrace(false)
+final class MetricsEvent extends jdk.jfr.Event {
+    @Label("CPU")
+    String name;
+
+    @Label("Cycles")
+    long cycles;
+
+    @Label("Instructions")
+    long instructions;
+
+    @Label("Interrupts")
+    long interrupts;
+
+    @Label("Illegal Opcode Stops")
+    long illegalOpcodeStops;
+
+    @Label("Page-Cross Penalties")
+    long pageCrossPenalties;
+
+    @Label("Emulated MHz")
+    double emulatedMHz;
+
+    @Label("Instructions per Second")
+    double instructionsPerSecond;
+
+    @Label("Page-Cross Penalty Rate")
+    @Percentage
+    double pageCrossPenaltyRate;
+}
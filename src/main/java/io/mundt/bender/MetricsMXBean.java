@@ -0,0 +1,26 @@
+package io.mundt.bender;
+
+/**
+ * Management interface of Metrics. Totals count from when the metrics were created; rates are over the last full
+ * second in which they were asked for.
+ */
+public interface MetricsMXBean {
+    long getCycles();
+
+    long getInstructions();
+
+    long getInterrupts();
+
+    long getIllegalOpcodeStops();
+
+    long getPageCrossPenalties();
+
+    double getEmulatedMHz();
+
+    double getInstructionsPerSecond();
+
+    /**
+     * Returns the page-cross penalties per instruction.
+     */
+    double getPageCrossPenaltyRate();
+}
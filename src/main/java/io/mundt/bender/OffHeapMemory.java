@@ -0,0 +1,102 @@
+package io.mundt.bender;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 64K of RAM kept outside the Java heap in a direct ByteBuffer. A buffer can also be passed in, e.g. a mapped file
+ * shared with native tools or other processes.
+ */
+public class OffHeapMemory implements Bus {
+    public static final int SIZE = 64 * 1024;
+
+    private final ByteBuffer data;
+
+    private final boolean[] watchedPages = new boolean[SIZE / 0x100];
+
+    private WriteWatcher watcher;
+
+    public OffHeapMemory() {
+        this(ByteBuffer.allocateDirect(SIZE));
+    }
+
+    /**
+     * Uses the first SIZE bytes of the buffer's capacity, whatever its position and limit.
+     */
+    public OffHeapMemory(ByteBuffer buffer) {
+        if (buffer.capacity() < SIZE) {
+            throw new IllegalArgumentException("Buffer too small: " + buffer.capacity());
+        }
+        data = buffer.duplicate().clear().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public ByteBuffer buffer() {
+        return data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public int readByte(int address) {
+        return data.get(address & 0xFFFF) & 0xFF;
+    }
+
+    @Override
+    public void writeByte(int address, int value) {
+        address &= 0xFFFF;
+        if (watchedPages[address >>> 8]) {
+            watcher.written(address, 1);
+        }
+        data.put(address, (byte) value);
+    }
+
+    @Override
+    public int readWord(int address) {
+        address &= 0xFFFF;
+        if (address == 0xFFFF) {
+            return readByte(address) | (readByte(0) << 8);
+        }
+        return data.getShort(address) & 0xFFFF;
+    }
+
+    @Override
+    public void writeWord(int address, int value) {
+        address &= 0xFFFF;
+        if (address == 0xFFFF) {
+            writeByte(address, value);
+            writeByte(0, value >> 8);
+        } else if (watchedPages[address >>> 8] || watchedPages[(address + 1) >>> 8]) {
+            writeByte(address, value);
+            writeByte(address + 1, value >> 8);
+        } else {
+            data.putShort(address, (short) value);
+        }
+    }
+
+    @Override
+    public void load(int address, byte[] data, int offset, int length) {
+        while (length > 0) {
+            int start = address & 0xFFFF;
+            int chunk = Math.min(length, 0x100 - (start & 0xFF));
+            if (watchedPages[start >>> 8]) {
+                watcher.written(start, chunk);
+            }
+            this.data.put(start, data, offset, chunk);
+            address += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Only writes made through this bus are reported, not changes made directly to a shared buffer.
+     */
+    @Override
+    public boolean setWriteWatcher(WriteWatcher watcher) {
+        this.watcher = watcher;
+        return true;
+    }
+
+    @Override
+    public void watchPage(int page, boolean watched) {
+        watchedPages[page] = watched;
+    }
+}
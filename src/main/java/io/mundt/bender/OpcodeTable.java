@@ -0,0 +1,452 @@
+package io.mundt.bender;
+
+final class OpcodeTable {
+    @FunctionalInterface
+    interface Handler {
+        int execute(CPU cpu, int operand);
+    }
+
+    // Handlers by opcode, followed by the fused handlers for common instruction pairs. A fused handler gets the first
+    // instruction's operand in the low and the second's in the high 16 bits, and returns the extra cycles of both. It
+    // sets cpu.elapsed to the first instruction's cycles while the second accesses the bus.
+    static final Handler[] HANDLERS = new Handler[0x100 + 0x20];
+    static final int[] OPERAND_BYTES = new int[256];
+    static final int[] CYCLES = new int[256];
+
+    // Handler index of the fused handler by (first opcode << 8 | second opcode), or 0 if the pair is not fused.
+    static final int[] FUSIONS = new int[0x10000];
+
+    private static int fusedHandlers;
+
+    static {
+        define(0xA9, 1, 2, (cpu, operand) -> { // LDA #nn
+            cpu.lda(operand);
+            return 0;
+        });
+        define(0xA5, 1, 3, (cpu, operand) -> { // LDA nn
+            cpu.lda(cpu.bus.readByte(operand));
+            return 0;
+        });
+        define(0xB5, 1, 4, (cpu, operand) -> { // LDA nn,X
+            cpu.lda(cpu.bus.readByte(cpu.zeroPageX(operand)));
+            return 0;
+        });
+        define(0xAD, 2, 4, (cpu, operand) -> { // LDA nnnn
+            cpu.lda(cpu.bus.readByte(operand));
+            return 0;
+        });
+        define(0xBD, 2, 4, (cpu, operand) -> { // LDA nnnn,X
+            int address = cpu.absoluteX(operand);
+            cpu.lda(cpu.bus.readByte(address));
+            return cpu.penalty(address);
+        });
+        define(0xB9, 2, 4, (cpu, operand) -> { // LDA nnnn,Y
+            int address = cpu.absoluteY(operand);
+            cpu.lda(cpu.bus.readByte(address));
+            return cpu.penalty(address);
+        });
+        define(0xA1, 1, 6, (cpu, operand) -> { // LDA (nn,X)
+            cpu.lda(cpu.bus.readByte(cpu.indirectX(operand)));
+            return 0;
+        });
+        define(0xB1, 1, 5, (cpu, operand) -> { // LDA (nn),Y
+            int address = cpu.indirectY(operand);
+            cpu.lda(cpu.bus.readByte(address));
+            return cpu.penalty(address);
+        });
+        define(0xA2, 1, 2, (cpu, operand) -> { // LDX #nn
+            cpu.ldx(operand);
+            return 0;
+        });
+        define(0xA6, 1, 3, (cpu, operand) -> { // LDX nn
+            cpu.ldx(cpu.bus.readByte(operand));
+            return 0;
+        });
+        define(0xB6, 1, 4, (cpu, operand) -> { // LDX nn,Y
+            cpu.ldx(cpu.bus.readByte(cpu.zeroPageY(operand)));
+            return 0;
+        });
+        define(0xAE, 2, 4, (cpu, operand) -> { // LDX nnnn
+            cpu.ldx(cpu.bus.readByte(operand));
+            return 0;
+        });
+        define(0xBE, 2, 4, (cpu, operand) -> { // LDX nnnn,Y
+            int address = cpu.absoluteY(operand);
+            cpu.ldx(cpu.bus.readByte(address));
+            return cpu.penalty(address);
+        });
+        define(0xA0, 1, 2, (cpu, operand) -> { // LDY #nn
+            cpu.ldy(operand);
+            return 0;
+        });
+        define(0xA4, 1, 3, (cpu, operand) -> { // LDY nn
+            cpu.ldy(cpu.bus.readByte(operand));
+            return 0;
+        });
+        define(0xB4, 1, 4, (cpu, operand) -> { // LDY nn,X
+            cpu.ldy(cpu.bus.readByte(cpu.zeroPageX(operand)));
+            return 0;
+        });
+        define(0xAC, 2, 4, (cpu, operand) -> { // LDY nnnn
+            cpu.ldy(cpu.bus.readByte(operand));
+            return 0;
+        });
+        define(0xBC, 2, 4, (cpu, operand) -> { // LDY nnnn,X
+            int address = cpu.absoluteX(operand);
+            cpu.ldy(cpu.bus.readByte(address));
+            return cpu.penalty(address);
+        });
+        define(0x85, 1, 3, (cpu, operand) -> { // STA nn
+            cpu.bus.writeByte(operand, cpu.a);
+            return 0;
+        });
+        define(0x95, 1, 4, (cpu, operand) -> { // STA nn,X
+            cpu.bus.writeByte(cpu.zeroPageX(operand), cpu.a);
+            return 0;
+        });
+        define(0x8D, 2, 4, (cpu, operand) -> { // STA nnnn
+            cpu.bus.writeByte(operand, cpu.a);
+            return 0;
+        });
+        define(0x9D, 2, 5, (cpu, operand) -> { // STA nnnn,X
+            cpu.bus.writeByte(cpu.absoluteX(operand), cpu.a);
+            return 0;
+        });
+        define(0x99, 2, 5, (cpu, operand) -> { // STA nnnn,Y
+            cpu.bus.writeByte(cpu.absoluteY(operand), cpu.a);
+            return 0;
+        });
+        define(0x81, 1, 6, (cpu, operand) -> { // STA (nn,X)
+            cpu.bus.writeByte(cpu.indirectX(operand), cpu.a);
+            return 0;
+        });
+        define(0x91, 1, 6, (cpu, operand) -> { // STA (nn),Y
+            cpu.bus.writeByte(cpu.indirectY(operand), cpu.a);
+            return 0;
+        });
+        define(0x86, 1, 3, (cpu, operand) -> { // STX nn
+            cpu.bus.writeByte(operand, cpu.x);
+            return 0;
+        });
+        define(0x96, 1, 4, (cpu, operand) -> { // STX nn,Y
+            cpu.bus.writeByte(cpu.zeroPageY(operand), cpu.x);
+            return 0;
+        });
+        define(0x8E, 2, 4, (cpu, operand) -> { // STX nnnn
+            cpu.bus.writeByte(operand, cpu.x);
+            return 0;
+        });
+        define(0x84, 1, 3, (cpu, operand) -> { // STY nn
+            cpu.bus.writeByte(operand, cpu.y);
+            return 0;
+        });
+        define(0x94, 1, 4, (cpu, operand) -> { // STY nn,X
+            cpu.bus.writeByte(cpu.zeroPageX(operand), cpu.y);
+            return 0;
+        });
+        define(0x8C, 2, 4, (cpu, operand) -> { // STY nnnn
+            cpu.bus.writeByte(operand, cpu.y);
+            return 0;
+        });
+        define(0xAA, 0, 2, (cpu, operand) -> { // TAX
+            cpu.ldx(cpu.a);
+            return 0;
+        });
+        define(0xA8, 0, 2, (cpu, operand) -> { // TAY
+            cpu.ldy(cpu.a);
+            return 0;
+        });
+        define(0x8A, 0, 2, (cpu, operand) -> { // TXA
+            cpu.lda(cpu.x);
+            return 0;
+        });
+        define(0x98, 0, 2, (cpu, operand) -> { // TYA
+            cpu.lda(cpu.y);
+            return 0;
+        });
+        define(0xBA, 0, 2, (cpu, operand) -> { // TSX
+            cpu.ldx(cpu.sp);
+            return 0;
+        });
+        define(0x9A, 0, 2, (cpu, operand) -> { // TXS
+            cpu.sp = cpu.x;
+            return 0;
+        });
+        define(0x48, 0, 3, (cpu, operand) -> { // PHA
+            cpu.stackPush(cpu.a);
+            return 0;
+        });
+        define(0x08, 0, 3, (cpu, operand) -> { // PHP
+            cpu.stackPush(cpu.getStatus());
+            return 0;
+        });
+        define(0x68, 0, 4, (cpu, operand) -> { // PLA
+            cpu.lda(cpu.stackPop());
+            return 0;
+        });
+        define(0x28, 0, 4, (cpu, operand) -> { // PLP
+            cpu.setStatus(cpu.stackPop());
+            return 0;
+        });
+        define(0x29, 1, 2, (cpu, operand) -> { // AND #nn
+            cpu.and(operand);
+            return 0;
+        });
+        define(0x25, 1, 3, (cpu, operand) -> { // AND nn
+            cpu.and(cpu.bus.readByte(operand));
+            return 0;
+        });
+        define(0x35, 1, 4, (cpu, operand) -> { // AND nn,X
+            cpu.and(cpu.bus.readByte(cpu.zeroPageX(operand)));
+            return 0;
+        });
+        define(0x2D, 2, 4, (cpu, operand) -> { // AND nnnn
+            cpu.and(cpu.bus.readByte(operand));
+            return 0;
+        });
+        define(0x3D, 2, 4, (cpu, operand) -> { // AND nnnn,X
+            int address = cpu.absoluteX(operand);
+            cpu.and(cpu.bus.readByte(address));
+            return cpu.penalty(address);
+        });
+        define(0x39, 2, 4, (cpu, operand) -> { // AND nnnn,Y
+            int address = cpu.absoluteY(operand);
+            cpu.and(cpu.bus.readByte(address));
+            return cpu.penalty(address);
+        });
+        define(0x21, 1, 6, (cpu, operand) -> { // AND (nn,X)
+            cpu.and(cpu.bus.readByte(cpu.indirectX(operand)));
+            return 0;
+        });
+        define(0x31, 1, 5, (cpu, operand) -> { // AND (nn),Y
+            int address = cpu.indirectY(operand);
+            cpu.and(cpu.bus.readByte(address));
+            return cpu.penalty(address);
+        });
+        define(0x49, 1, 2, (cpu, operand) -> { // EOR #nn
+            cpu.eor(operand);
+            return 0;
+        });
+        define(0x45, 1, 3, (cpu, operand) -> { // EOR nn
+            cpu.eor(cpu.bus.readByte(operand));
+            return 0;
+        });
+        define(0x55, 1, 4, (cpu, operand) -> { // EOR nn,X
+            cpu.eor(cpu.bus.readByte(cpu.zeroPageX(operand)));
+            return 0;
+        });
+        define(0x4D, 2, 4, (cpu, operand) -> { // EOR nnnn
+            cpu.eor(cpu.bus.readByte(operand));
+            return 0;
+        });
+        define(0x5D, 2, 4, (cpu, operand) -> { // EOR nnnn,X
+            int address = cpu.absoluteX(operand);
+            cpu.eor(cpu.bus.readByte(address));
+            return cpu.penalty(address);
+        });
+        define(0x59, 2, 4, (cpu, operand) -> { // EOR nnnn,Y
+            int address = cpu.absoluteY(operand);
+            cpu.eor(cpu.bus.readByte(address));
+            return cpu.penalty(address);
+        });
+        define(0x41, 1, 6, (cpu, operand) -> { // EOR (nn,X)
+            cpu.eor(cpu.bus.readByte(cpu.indirectX(operand)));
+            return 0;
+        });
+        define(0x51, 1, 5, (cpu, operand) -> { // EOR (nn),Y
+            int address = cpu.indirectY(operand);
+            cpu.eor(cpu.bus.readByte(address));
+            return cpu.penalty(address);
+        });
+        define(0x09, 1, 2, (cpu, operand) -> { // ORA #nn
+            cpu.ora(operand);
+            return 0;
+        });
+        define(0x05, 1, 3, (cpu, operand) -> { // ORA nn
+            cpu.ora(cpu.bus.readByte(operand));
+            return 0;
+        });
+        define(0x15, 1, 4, (cpu, operand) -> { // ORA nn,X
+            cpu.ora(cpu.bus.readByte(cpu.zeroPageX(operand)));
+            return 0;
+        });
+        define(0x0D, 2, 4, (cpu, operand) -> { // ORA nnnn
+            cpu.ora(cpu.bus.readByte(operand));
+            return 0;
+        });
+        define(0x1D, 2, 4, (cpu, operand) -> { // ORA nnnn,X
+            int address = cpu.absoluteX(operand);
+            cpu.ora(cpu.bus.readByte(address));
+            return cpu.penalty(address);
+        });
+        define(0x19, 2, 4, (cpu, operand) -> { // ORA nnnn,Y
+            int address = cpu.absoluteY(operand);
+            cpu.ora(cpu.bus.readByte(address));
+            return cpu.penalty(address);
+        });
+        define(0x01, 1, 6, (cpu, operand) -> { // ORA (nn,X)
+            cpu.ora(cpu.bus.readByte(cpu.indirectX(operand)));
+            return 0;
+        });
+        define(0x11, 1, 5, (cpu, operand) -> { // ORA (nn),Y
+            int address = cpu.indirectY(operand);
+            cpu.ora(cpu.bus.readByte(address));
+            return cpu.penalty(address);
+        });
+        define(0xE8, 0, 2, (cpu, operand) -> { // INX
+            cpu.ldx(cpu.x + 1);
+            return 0;
+        });
+        define(0xC8, 0, 2, (cpu, operand) -> { // INY
+            cpu.ldy(cpu.y + 1);
+            return 0;
+        });
+        define(0xCA, 0, 2, (cpu, operand) -> { // DEX
+            cpu.ldx(cpu.x - 1);
+            return 0;
+        });
+        define(0x88, 0, 2, (cpu, operand) -> { // DEY
+            cpu.ldy(cpu.y - 1);
+            return 0;
+        });
+        define(0x10, 1, 2, (cpu, operand) -> cpu.branch(!cpu.isNegative(), operand)); // BPL nn
+        define(0x30, 1, 2, (cpu, operand) -> cpu.branch(cpu.isNegative(), operand)); // BMI nn
+        define(0x50, 1, 2, (cpu, operand) -> cpu.branch(!cpu.overflow, operand)); // BVC nn
+        define(0x70, 1, 2, (cpu, operand) -> cpu.branch(cpu.overflow, operand)); // BVS nn
+        define(0x90, 1, 2, (cpu, operand) -> cpu.branch(!cpu.carry, operand)); // BCC nn
+        define(0xB0, 1, 2, (cpu, operand) -> cpu.branch(cpu.carry, operand)); // BCS nn
+        define(0xD0, 1, 2, (cpu, operand) -> cpu.branch(!cpu.isZero(), operand)); // BNE nn
+        define(0xF0, 1, 2, (cpu, operand) -> cpu.branch(cpu.isZero(), operand)); // BEQ nn
+        define(0x78, 0, 2, (cpu, operand) -> { // SEI
+            cpu.interruptDisabled = true;
+            return 0;
+        });
+        define(0x58, 0, 2, (cpu, operand) -> { // CLI
+            cpu.interruptDisabled = false;
+            return 0;
+        });
+        define(0x40, 0, 6, (cpu, operand) -> { // RTI
+            cpu.returnFromInterrupt();
+            return 0;
+        });
+        define(0x20, 2, 6, (cpu, operand) -> { // JSR nnnn
+            cpu.jumpToSubroutine(operand);
+            return 0;
+        });
+        define(0x60, 0, 6, (cpu, operand) -> { // RTS
+            cpu.returnFromSubroutine();
+            return 0;
+        });
+
+        fuse(0xA9, 0x85, (cpu, operands) -> { // LDA #nn / STA nn
+            cpu.lda(operands);
+            cpu.elapsed = 2;
+            cpu.bus.writeByte(operands >>> 16, cpu.a);
+            cpu.elapsed = 0;
+            return 0;
+        });
+        fuse(0xA9, 0x8D, (cpu, operands) -> { // LDA #nn / STA nnnn
+            cpu.lda(operands);
+            cpu.elapsed = 2;
+            cpu.bus.writeByte(operands >>> 16, cpu.a);
+            cpu.elapsed = 0;
+            return 0;
+        });
+        fuse(0xA5, 0x85, (cpu, operands) -> { // LDA nn / STA nn
+            cpu.lda(cpu.bus.readByte(operands & 0xFF));
+            cpu.elapsed = 3;
+            cpu.bus.writeByte(operands >>> 16, cpu.a);
+            cpu.elapsed = 0;
+            return 0;
+        });
+        fuse(0xA5, 0x8D, (cpu, operands) -> { // LDA nn / STA nnnn
+            cpu.lda(cpu.bus.readByte(operands & 0xFF));
+            cpu.elapsed = 3;
+            cpu.bus.writeByte(operands >>> 16, cpu.a);
+            cpu.elapsed = 0;
+            return 0;
+        });
+        fuse(0xBD, 0x9D, (cpu, operands) -> { // LDA nnnn,X / STA nnnn,X
+            int address = cpu.absoluteX(operands & 0xFFFF);
+            cpu.lda(cpu.bus.readByte(address));
+            int penalty = cpu.penalty(address);
+            cpu.elapsed = 4 + penalty;
+            cpu.bus.writeByte(cpu.absoluteX(operands >>> 16), cpu.a);
+            cpu.elapsed = 0;
+            return penalty;
+        });
+        fuse(0xB9, 0x99, (cpu, operands) -> { // LDA nnnn,Y / STA nnnn,Y
+            int address = cpu.absoluteY(operands & 0xFFFF);
+            cpu.lda(cpu.bus.readByte(address));
+            int penalty = cpu.penalty(address);
+            cpu.elapsed = 4 + penalty;
+            cpu.bus.writeByte(cpu.absoluteY(operands >>> 16), cpu.a);
+            cpu.elapsed = 0;
+            return penalty;
+        });
+        fuse(0xB1, 0x91, (cpu, operands) -> { // LDA (nn),Y / STA (nn),Y
+            int address = cpu.indirectY(operands & 0xFF);
+            cpu.lda(cpu.bus.readByte(address));
+            int penalty = cpu.penalty(address);
+            cpu.elapsed = 5 + penalty;
+            cpu.bus.writeByte(cpu.indirectY(operands >>> 16), cpu.a);
+            cpu.elapsed = 0;
+            return penalty;
+        });
+        fuse(0xCA, 0xD0, (cpu, operands) -> { // DEX / BNE nn
+            cpu.ldx(cpu.x - 1);
+            return cpu.branch(cpu.x != 0, operands >>> 16);
+        });
+        fuse(0x88, 0xD0, (cpu, operands) -> { // DEY / BNE nn
+            cpu.ldy(cpu.y - 1);
+            return cpu.branch(cpu.y != 0, operands >>> 16);
+        });
+        fuse(0xE8, 0xD0, (cpu, operands) -> { // INX / BNE nn
+            cpu.ldx(cpu.x + 1);
+            return cpu.branch(cpu.x != 0, operands >>> 16);
+        });
+        fuse(0xC8, 0xD0, (cpu, operands) -> { // INY / BNE nn
+            cpu.ldy(cpu.y + 1);
+            return cpu.branch(cpu.y != 0, operands >>> 16);
+        });
+        fuse(0x8A, 0x48, (cpu, operands) -> { // TXA / PHA
+            cpu.lda(cpu.x);
+            cpu.elapsed = 2;
+            cpu.stackPush(cpu.a);
+            cpu.elapsed = 0;
+            return 0;
+        });
+        fuse(0x98, 0x48, (cpu, operands) -> { // TYA / PHA
+            cpu.lda(cpu.y);
+            cpu.elapsed = 2;
+            cpu.stackPush(cpu.a);
+            cpu.elapsed = 0;
+            return 0;
+        });
+        fuse(0x68, 0xAA, (cpu, operands) -> { // PLA / TAX
+            cpu.a = (byte) cpu.stackPop();
+            cpu.ldx(cpu.a);
+            return 0;
+        });
+        fuse(0x68, 0xA8, (cpu, operands) -> { // PLA / TAY
+            cpu.a = (byte) cpu.stackPop();
+            cpu.ldy(cpu.a);
+            return 0;
+        });
+    }
+
+    private OpcodeTable() {
+    }
+
+    private static void define(int opcode, int operandBytes, int cycles, Handler handler) {
+        HANDLERS[opcode] = handler;
+        OPERAND_BYTES[opcode] = operandBytes;
+        CYCLES[opcode] = cycles;
+    }
+
+    private static void fuse(int first, int second, Handler handler) {
+        int index = 0x100 + fusedHandlers++;
+        HANDLERS[index] = handler;
+        FUSIONS[first << 8 | second] = index;
+    }
+}
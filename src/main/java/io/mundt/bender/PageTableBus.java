@@ -0,0 +1,329 @@
+package io.mundt.bender;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Bus that maps each 256-byte page to RAM, ROM or a device. RAM and ROM pages are plain arrays looked up in the
+ * page table, so accesses to them never reach device code; a page without an array for the access falls back to its
+ * device, and writes to ROM pages are ignored.
+ */
+public class PageTableBus implements Bus {
+    public static final int PAGE_SIZE = 0x100;
+
+    public static final int PAGES = 0x100;
+
+    // Room for every storage array the page table can refer to, at most half full.
+    private static final int STORAGE_SLOTS = PAGES * 4;
+    private static final int STORAGE_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(STORAGE_SLOTS);
+
+    private final byte[][] readPages = new byte[PAGES][];
+
+    // Write fast path. Pages whose writes are reported to the watcher are left null here and keep their storage in
+    // writeTargets.
+    private final byte[][] writePages = new byte[PAGES][];
+
+    private final byte[][] writeTargets = new byte[PAGES][];
+
+    private final Device[] devices = new Device[PAGES];
+
+    private final boolean[] watchedPages = new boolean[PAGES];
+
+    // Watched pages plus pages that write into the storage of a watched page through a mirror.
+    private final boolean[] reportedPages = new boolean[PAGES];
+
+    // Reported pages whose writes may have to be reported under another address because of mirroring.
+    private final boolean[] mirroredPages = new boolean[PAGES];
+
+    private int watchedPageCount;
+
+    private int mirroredPageCount;
+
+    // While pages are watched: for each storage array in the page table, how many watched pages show it and how many
+    // pages write into it. An identity hash table with linear probing in preallocated arrays, so remapping a page only
+    // updates the counts of its old and new storage and never allocates.
+    private final byte[][] storageKeys = new byte[STORAGE_SLOTS][];
+    private final int[] storageWatchers = new int[STORAGE_SLOTS];
+    private final int[] storageWriters = new int[STORAGE_SLOTS];
+
+    private WriteWatcher watcher;
+
+    public PageTableBus() {
+        mapRam(0, PAGES);
+    }
+
+    @Override
+    public int readByte(int address) {
+        int page = (address >>> 8) & 0xFF;
+        byte[] data = readPages[page];
+        if (data != null) {
+            return data[address & 0xFF] & 0xFF;
+        }
+        return devices[page].readByte(address & 0xFFFF) & 0xFF;
+    }
+
+    @Override
+    public void writeByte(int address, int value) {
+        int page = (address >>> 8) & 0xFF;
+        byte[] data = writePages[page];
+        if (data != null) {
+            data[address & 0xFF] = (byte) value;
+            return;
+        }
+        if (reportedPages[page]) {
+            report(page, address & 0xFF);
+            data = writeTargets[page];
+            if (data != null) {
+                data[address & 0xFF] = (byte) value;
+                return;
+            }
+        }
+        Device device = devices[page];
+        if (device != null) {
+            device.writeByte(address & 0xFFFF, value & 0xFF);
+        }
+    }
+
+    public void mapRam(int firstPage, int pageCount) {
+        for (int page = firstPage; page < firstPage + pageCount; page++) {
+            byte[] data = new byte[PAGE_SIZE];
+            map(page, data, data, null);
+        }
+    }
+
+    public void mapRom(int firstPage, byte[] image) {
+        for (int offset = 0; offset < image.length; offset += PAGE_SIZE) {
+            byte[] data = new byte[PAGE_SIZE];
+            System.arraycopy(image, offset, data, 0, Math.min(PAGE_SIZE, image.length - offset));
+            map(firstPage + offset / PAGE_SIZE, data, null, null);
+        }
+    }
+
+    /**
+     * Maps a ROM image that stays in the given buffer, typically a file mapped by ImageLoader, so instances sharing
+     * one image share its memory. Reads from these pages go through the device path rather than the array fast path.
+     */
+    public void mapRom(int firstPage, ByteBuffer image) {
+        ByteBuffer rom = image.slice().asReadOnlyBuffer();
+        int pageCount = (rom.remaining() + PAGE_SIZE - 1) / PAGE_SIZE;
+        for (int i = 0; i < pageCount; i++) {
+            map(firstPage + i, null, null, new RomPage(rom, i * PAGE_SIZE));
+        }
+    }
+
+    public void mapDevice(int firstPage, int pageCount, Device device) {
+        for (int page = firstPage; page < firstPage + pageCount; page++) {
+            map(page, null, null, device);
+        }
+    }
+
+    /**
+     * Maps one bank of {@code storage} at {@code firstPage}. Switching banks only retargets the page table entries,
+     * so it costs the same whatever the size of the storage; contents written to a RAM bank stay with that bank.
+     */
+    public void mapBank(int firstPage, BankedStorage storage, int bank, boolean writable) {
+        for (int offset = 0; offset < storage.getBankSize(); offset += PAGE_SIZE) {
+            byte[] data = storage.page(bank, offset);
+            map(firstPage + offset / PAGE_SIZE, data, writable ? data : null, null);
+        }
+    }
+
+    /**
+     * Makes {@code pageCount} pages starting at {@code targetPage} show whatever is mapped at {@code sourcePage},
+     * sharing the same storage.
+     */
+    public void mirror(int sourcePage, int targetPage, int pageCount) {
+        for (int i = 0; i < pageCount; i++) {
+            map(targetPage + i, readPages[sourcePage + i], writeTargets[sourcePage + i], devices[sourcePage + i]);
+        }
+    }
+
+    private void map(int page, byte[] readData, byte[] writeData, Device device) {
+        if (page < 0 || page >= PAGES) {
+            throw new IllegalArgumentException(String.format("Page out of range: %X", page));
+        }
+        if (watchedPages[page]) {
+            watcher.written(page * PAGE_SIZE, PAGE_SIZE); // the page is about to show different contents
+        }
+        byte[] oldReadData = readPages[page];
+        if (watchedPageCount != 0) {
+            count(writeTargets[page], 0, -1);
+            if (watchedPages[page]) {
+                count(oldReadData, -1, 0);
+            }
+        }
+        readPages[page] = readData;
+        writeTargets[page] = writeData;
+        devices[page] = device;
+        if (watchedPageCount == 0) {
+            writePages[page] = writeData;
+            return;
+        }
+        count(writeData, 0, 1);
+        if (watchedPages[page]) {
+            count(readData, 1, 0);
+        }
+        updatePage(page);
+        if (watchedPages[page] && oldReadData != readData) {
+            updateWritersOf(oldReadData, page);
+            updateWritersOf(readData, page);
+        }
+    }
+
+    /**
+     * Watched pages leave the write fast path. Writes to their storage through any mirror are reported under the
+     * address of every watched page showing it, and remapping a watched page reports the whole page.
+     */
+    @Override
+    public boolean setWriteWatcher(WriteWatcher watcher) {
+        this.watcher = watcher;
+        return true;
+    }
+
+    @Override
+    public void watchPage(int page, boolean watched) {
+        if (watchedPages[page] == watched) {
+            return;
+        }
+        watchedPages[page] = watched;
+        watchedPageCount += watched ? 1 : -1;
+        if (watchedPageCount == (watched ? 1 : 0)) {
+            rebuildReportedPages();
+            return;
+        }
+        count(readPages[page], watched ? 1 : -1, 0);
+        updatePage(page);
+        updateWritersOf(readPages[page], page);
+    }
+
+    // Recounts everything when the first page is watched or the last one no longer is.
+    private void rebuildReportedPages() {
+        Arrays.fill(storageKeys, null);
+        Arrays.fill(storageWatchers, 0);
+        Arrays.fill(storageWriters, 0);
+        if (watchedPageCount != 0) {
+            for (int page = 0; page < PAGES; page++) {
+                count(writeTargets[page], 0, 1);
+                if (watchedPages[page]) {
+                    count(readPages[page], 1, 0);
+                }
+            }
+        }
+        for (int page = 0; page < PAGES; page++) {
+            updatePage(page);
+        }
+    }
+
+    private void updatePage(int page) {
+        byte[] target = writeTargets[page];
+        int watchers = watchedPageCount == 0 ? 0 : watchers(target);
+        boolean reported = watchedPages[page] || watchers > 0;
+        reportedPages[page] = reported;
+        writePages[page] = reported ? null : target;
+        boolean mirrored = reported && (!watchedPages[page] || watchers > 1);
+        if (mirroredPages[page] != mirrored) {
+            mirroredPages[page] = mirrored;
+            mirroredPageCount += mirrored ? 1 : -1;
+        }
+    }
+
+    // Updates the pages besides the given one that write into storage whose number of watchers changed. Only storage
+    // shared through mirrors or banks mapped twice has any, so this rarely has to look at the page table.
+    private void updateWritersOf(byte[] storage, int page) {
+        if (storage == null || writers(storage) <= (writeTargets[page] == storage ? 1 : 0)) {
+            return;
+        }
+        for (int other = 0; other < PAGES; other++) {
+            if (other != page && writeTargets[other] == storage) {
+                updatePage(other);
+            }
+        }
+    }
+
+    private void count(byte[] storage, int watchers, int writers) {
+        if (storage == null) {
+            return;
+        }
+        int slot = slot(storage);
+        storageKeys[slot] = storage;
+        storageWatchers[slot] += watchers;
+        storageWriters[slot] += writers;
+        if (storageWatchers[slot] == 0 && storageWriters[slot] == 0) {
+            removeSlot(slot);
+        }
+    }
+
+    private int watchers(byte[] storage) {
+        return storage == null ? 0 : storageWatchers[slot(storage)];
+    }
+
+    private int writers(byte[] storage) {
+        return storageWriters[slot(storage)];
+    }
+
+    // Slot holding the storage, or the empty slot it would go into.
+    private int slot(byte[] storage) {
+        int slot = home(storage);
+        while (storageKeys[slot] != null && storageKeys[slot] != storage) {
+            slot = (slot + 1) & (STORAGE_SLOTS - 1);
+        }
+        return slot;
+    }
+
+    private static int home(byte[] storage) {
+        return System.identityHashCode(storage) * 0x9E3779B9 >>> STORAGE_SHIFT;
+    }
+
+    // Backward shift deletion: moves later entries of the probe sequence into the hole, so lookups need no tombstones.
+    private void removeSlot(int slot) {
+        int mask = STORAGE_SLOTS - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; storageKeys[next] != null; next = (next + 1) & mask) {
+            if (((next - home(storageKeys[next])) & mask) >= ((next - hole) & mask)) {
+                storageKeys[hole] = storageKeys[next];
+                storageWatchers[hole] = storageWatchers[next];
+                storageWriters[hole] = storageWriters[next];
+                hole = next;
+            }
+        }
+        storageKeys[hole] = null;
+        storageWatchers[hole] = 0;
+        storageWriters[hole] = 0;
+    }
+
+    private void report(int page, int offset) {
+        if (mirroredPageCount == 0) {
+            watcher.written(page * PAGE_SIZE + offset, 1);
+            return;
+        }
+        byte[] target = writeTargets[page];
+        for (int watched = 0; watched < PAGES; watched++) {
+            if (watchedPages[watched] && (watched == page || target != null && readPages[watched] == target)) {
+                watcher.written(watched * PAGE_SIZE + offset, 1);
+            }
+        }
+    }
+
+    // A page of a ROM image in a buffer. One per page, addressed by the offset within the page only, so the page reads
+    // the same wherever it is mirrored.
+    private static final class RomPage implements Device {
+        private final ByteBuffer rom;
+
+        private final int base;
+
+        RomPage(ByteBuffer rom, int base) {
+            this.rom = rom;
+            this.base = base;
+        }
+
+        @Override
+        public int readByte(int address) {
+            int offset = base + (address & 0xFF);
+            return offset < rom.limit() ? rom.get(offset) : 0;
+        }
+
+        @Override
+        public void writeByte(int address, int value) {
+        }
+    }
+}
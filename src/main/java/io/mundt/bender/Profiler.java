@@ -0,0 +1,151 @@
+package io.mundt.bender;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Counts executions and cycles of every instruction a CPU executes by address, in primitive arrays indexed directly
+ * with pc. The totals by opcode are summed from those when read, using the opcode last executed at each address. When
+ * an address executes a different opcode than before, its totals so far move from the new opcode to the old one, so
+ * code that is overwritten still counts under the opcode it ran with and the CPU only compares one byte per
+ * instruction for it.
+ * <p>
+ * Not thread-safe; read it from the thread running the CPU, e.g. when run() returns.
+ */
+public final class Profiler {
+    static final int MAGIC = 0x4250524F; // "BPRO"
+
+    private final int[] pcCounts = new int[0x10000];
+
+    private final long[] pcCycles = new long[0x10000];
+
+    private final byte[] pcOpcodes = new byte[0x10000];
+
+    // Corrections to the totals by opcode for addresses that executed more than one opcode.
+    private final long[] movedCounts = new long[0x100];
+
+    private final long[] movedCycles = new long[0x100];
+
+    void count(int pc, int opcode, int cycles) {
+        if (pcOpcodes[pc] != (byte) opcode) {
+            opcodeChanged(pc, opcode);
+        }
+        pcCounts[pc]++;
+        pcCycles[pc] += cycles;
+    }
+
+    private void opcodeChanged(int pc, int opcode) {
+        int old = pcOpcodes[pc] & 0xFF;
+        movedCounts[old] += pcCounts[pc];
+        movedCycles[old] += pcCycles[pc];
+        movedCounts[opcode] -= pcCounts[pc];
+        movedCycles[opcode] -= pcCycles[pc];
+        pcOpcodes[pc] = (byte) opcode;
+    }
+
+    public int getCount(int address) {
+        return pcCounts[address & 0xFFFF];
+    }
+
+    public long getCycles(int address) {
+        return pcCycles[address & 0xFFFF];
+    }
+
+    public long getTotalCycles() {
+        long total = 0;
+        for (long cycles : pcCycles) {
+            total += cycles;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the executions by opcode, 256 entries.
+     */
+    public long[] getOpcodeCounts() {
+        long[] counts = movedCounts.clone();
+        for (int pc = 0; pc < pcCounts.length; pc++) {
+            counts[pcOpcodes[pc] & 0xFF] += pcCounts[pc];
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the cycles by opcode, 256 entries.
+     */
+    public long[] getOpcodeCycles() {
+        long[] cycles = movedCycles.clone();
+        for (int pc = 0; pc < pcCycles.length; pc++) {
+            cycles[pcOpcodes[pc] & 0xFF] += pcCycles[pc];
+        }
+        return cycles;
+    }
+
+    public void clear() {
+        Arrays.fill(pcCounts, 0);
+        Arrays.fill(pcCycles, 0);
+        Arrays.fill(pcOpcodes, (byte) 0);
+        Arrays.fill(movedCounts, 0);
+        Arrays.fill(movedCycles, 0);
+    }
+
+    /**
+     * Writes the opcodes and the addresses with the most cycles, at most {@code limit} of each, hottest first.
+     */
+    public void report(Appendable out, int limit) throws IOException {
+        long total = Math.max(1, getTotalCycles());
+        long[] opcodeCounts = getOpcodeCounts();
+        long[] opcodeCycles = getOpcodeCycles();
+        out.append(String.format("%-12s %12s %14s %7s%n", "opcode", "count", "cycles", "cycles%"));
+        for (int opcode : hottest(opcodeCycles, limit)) {
+            out.append(String.format("%02X %-9s %12d %14d %6.2f%%%n", opcode, Disassembler.template(opcode),
+                    opcodeCounts[opcode], opcodeCycles[opcode], 100.0 * opcodeCycles[opcode] / total));
+        }
+        out.append(String.format("%n%-16s %12s %14s %7s%n", "address", "count", "cycles", "cycles%"));
+        for (int pc : hottest(pcCycles, limit)) {
+            out.append(String.format("%04X %-11s %12d %14d %6.2f%%%n", pc, Disassembler.template(pcOpcodes[pc] & 0xFF),
+                    pcCounts[pc], pcCycles[pc], 100.0 * pcCycles[pc] / total));
+        }
+    }
+
+    /**
+     * Writes the magic number and the counter arrays as they are: executions and cycles by opcode, then by address.
+     */
+    public void dump(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        for (long count : getOpcodeCounts()) {
+            data.writeLong(count);
+        }
+        for (long cycles : getOpcodeCycles()) {
+            data.writeLong(cycles);
+        }
+        for (int count : pcCounts) {
+            data.writeInt(count);
+        }
+        for (long cycles : pcCycles) {
+            data.writeLong(cycles);
+        }
+        data.flush();
+    }
+
+    // Indexes of the largest non-zero values, largest first, ties by index.
+    private static int[] hottest(long[] values, int limit) {
+        int count = 0;
+        long[] keys = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != 0) {
+                // Values are cycle counts well below 2^47, so value and inverted index fit one sortable long.
+                keys[count++] = values[i] << 16 | (0xFFFF - i);
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        int[] indexes = new int[Math.min(limit, count)];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = 0xFFFF - (int) (keys[count - 1 - i] & 0xFFFF);
+        }
+        return indexes;
+    }
+}
@@ -0,0 +1,598 @@
+package io.mundt.bender;
+
+import static io.mundt.bender.ClassFile.Code.*;
+
+import io.mundt.bender.ClassFile.Code;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+
+/**
+ * Translates straight-line runs of instructions into hidden classes. Inside a block a, x, y and sp live in locals,
+ * Z and N are derived once at the exit from the last instruction that set them, and the block returns the cycles it
+ * took. Blocks never leave the page they start on and stop in front of the first instruction the recompiler does not
+ * cover, which is then left to the interpreter.
+ * <p>
+ * Pages holding blocks are watched through the CPU, and a write drops exactly the blocks whose bytes it touches. A
+ * block ends after any store that might hit its own page, and exits after any other store that dropped it, such as
+ * one through a mirror or to a device switching the bank under it, so it never runs code that has changed.
+ * <p>
+ * Before each bus access after the first instruction, a block sets cpu.elapsed to the cycles taken so far, so devices
+ * see the cycle the accessing instruction started at.
+ */
+final class Recompiler {
+    @FunctionalInterface
+    interface Block {
+        int execute(CPU cpu);
+    }
+
+    static final int DEFAULT_THRESHOLD = 16;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final Block INTERPRETER = CPU::interpret;
+
+    private static final String CPU_CLASS = "io/mundt/bender/CPU";
+    private static final String BUS_CLASS = "io/mundt/bender/Bus";
+
+    // Local variable slots of Block.execute().
+    private static final int CPU_SLOT = 1;
+    private static final int BUS_SLOT = 2;
+    private static final int A = 3;
+    private static final int X = 4;
+    private static final int Y = 5;
+    private static final int SP = 6;
+    private static final int PENALTY_SLOT = 7;
+
+    private static final int NONE = 0;
+
+    private enum Mode {
+        IMMEDIATE, ZERO_PAGE, ZERO_PAGE_X, ZERO_PAGE_Y, ABSOLUTE, ABSOLUTE_X, ABSOLUTE_Y, INDIRECT_X, INDIRECT_Y
+    }
+
+    private final CPU cpu;
+
+    private final Block[] blocks = new Block[0x10000];
+
+    private final int[] hits = new int[0x10000];
+
+    // Most cycles the block at each address can take, including every possible page-crossing penalty.
+    private final int[] worstCaseCycles = new int[0x10000];
+
+    // End address (exclusive) of the bytes each block was translated from.
+    private final int[] blockEnds = new int[0x10000];
+
+    // One bit per block start, so a write only has to look at the blocks on its page.
+    private final long[] blockStarts = new long[0x10000 / 64];
+
+    private final int[] pageBlockCounts = new int[0x100];
+
+    private int threshold = DEFAULT_THRESHOLD;
+
+    // Start of the block being executed, or -1.
+    private int running = -1;
+
+    Recompiler(CPU cpu) {
+        this.cpu = cpu;
+    }
+
+    int getThreshold() {
+        return threshold;
+    }
+
+    void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Runs the block at pc, compiling it once its address has been reached more than threshold times. Until then, at
+     * addresses where nothing can be compiled and when the block might not fit into the remaining cycle budget, a
+     * single instruction is interpreted.
+     */
+    int execute(long cycleBudget) {
+        int address = cpu.pc & 0xFFFF;
+        Block block = blocks[address];
+        if (block == null) {
+            if (hits[address]++ < threshold) {
+                return cpu.interpret();
+            }
+            block = compile(address);
+        }
+        if (worstCaseCycles[address] > cycleBudget) {
+            return cpu.interpret();
+        }
+        running = address;
+        int cycles = block.execute(cpu);
+        running = -1;
+        cpu.blockDropped = false;
+        return cycles;
+    }
+
+    void invalidate() {
+        for (int page = 0; page < pageBlockCounts.length; page++) {
+            if (pageBlockCounts[page] > 0) {
+                cpu.unwatchCodePage(page);
+            }
+        }
+        Arrays.fill(blocks, null);
+        Arrays.fill(hits, 0);
+        Arrays.fill(blockStarts, 0);
+        Arrays.fill(pageBlockCounts, 0);
+    }
+
+    /**
+     * Drops the blocks translated from any of the written bytes. They are compiled again once they have been reached
+     * threshold more times.
+     */
+    void written(int address, int length) {
+        int first = address & 0xFF00;
+        for (int i = first / 64; i < (first + 0x100) / 64; i++) {
+            for (long bits = blockStarts[i]; bits != 0; bits &= bits - 1) {
+                int start = i * 64 + Long.numberOfTrailingZeros(bits);
+                if (start < address + length && blockEnds[start] > address) {
+                    drop(start);
+                }
+            }
+        }
+    }
+
+    private void register(int start, int end, Block block) {
+        blocks[start] = block;
+        blockEnds[start] = end;
+        blockStarts[start >>> 6] |= 1L << start;
+        if (pageBlockCounts[start >>> 8]++ == 0) {
+            cpu.watchCodePage(start >>> 8);
+        }
+    }
+
+    private void drop(int start) {
+        if (start == running) {
+            cpu.blockDropped = true;
+        }
+        blocks[start] = null;
+        hits[start] = 0;
+        blockStarts[start >>> 6] &= ~(1L << start);
+        if (--pageBlockCounts[start >>> 8] == 0) {
+            cpu.unwatchCodePage(start >>> 8);
+        }
+    }
+
+    private Block compile(int start) {
+        ClassFile classFile = new ClassFile("io/mundt/bender/CompiledBlock", "java/lang/Object",
+                "io/mundt/bender/Recompiler$Block");
+        Code code = new Code(classFile, 8, 8);
+        code.local(ALOAD, CPU_SLOT);
+        code.field(GETFIELD, CPU_CLASS, "bus", "L" + BUS_CLASS + ";");
+        code.local(ASTORE, BUS_SLOT);
+        for (int register : new int[]{A, X, Y, SP}) {
+            code.local(ALOAD, CPU_SLOT);
+            code.field(GETFIELD, CPU_CLASS, fieldName(register), "B");
+            code.local(ISTORE, register);
+        }
+        code.constant(0);
+        code.local(ISTORE, PENALTY_SLOT);
+        // Object rather than the hidden class for this, which the frames never need to be more precise about.
+        code.frame("java/lang/Object", CPU_CLASS, BUS_CLASS, "I", "I", "I", "I", "I");
+
+        Translation translation = new Translation(code, start >>> 8);
+        int address = start;
+        while (!translation.ended) {
+            int opcode = cpu.plainBus.readByte(address);
+            int length = 1 + OpcodeTable.OPERAND_BYTES[opcode];
+            if (OpcodeTable.HANDLERS[opcode] == null || (address + length - 1 ^ start) >>> 8 != 0) {
+                break;
+            }
+            int operand = switch (length) {
+                case 2 -> cpu.plainBus.readByte(address + 1);
+                case 3 -> cpu.plainBus.readWord(address + 1);
+                default -> 0;
+            };
+            translation.stored = false;
+            if (!translation.translate(opcode, operand)) {
+                break;
+            }
+            translation.cycles += OpcodeTable.CYCLES[opcode];
+            translation.instructions++;
+            address += length;
+            if (translation.stored && !translation.ended) {
+                translation.exitIfDropped(address);
+            }
+        }
+        if (address == start) {
+            register(start, start + 1, INTERPRETER); // until the opcode changes
+            return INTERPRETER;
+        }
+        worstCaseCycles[start] = translation.cycles + translation.penalties;
+        translation.exit(address);
+        classFile.addMethod(ClassFile.ACC_PUBLIC, "execute", "(L" + CPU_CLASS + ";)I", code);
+
+        Code constructor = new Code(classFile, 1, 1);
+        constructor.local(ALOAD, 0);
+        constructor.invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        constructor.op(RETURN);
+        classFile.addMethod(ClassFile.ACC_PUBLIC, "<init>", "()V", constructor);
+
+        byte[] bytes = classFile.toByteArray(ClassFile.ACC_PUBLIC | ClassFile.ACC_FINAL | ClassFile.ACC_SUPER);
+        Block block;
+        try {
+            Class<?> blockClass = LOOKUP.defineHiddenClass(bytes, true).lookupClass();
+            block = (Block) blockClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load block at " + Integer.toHexString(start), e);
+        }
+        register(start, address, block);
+        return block;
+    }
+
+    private static String fieldName(int register) {
+        return switch (register) {
+            case A -> "a";
+            case X -> "x";
+            case Y -> "y";
+            default -> "sp";
+        };
+    }
+
+    private static final class Translation {
+        private final Code code;
+
+        private final int page;
+
+        // Set after a store that might modify the block's own page.
+        private boolean ended;
+
+        // Whether the current instruction writes to the bus.
+        private boolean stored;
+
+        // Register whose value Z and N were last derived from, or NONE.
+        private int flagRegister = NONE;
+
+        private final boolean[] written = new boolean[SP + 1];
+
+        private int cycles;
+
+        private int instructions;
+
+        // Instructions that can take an extra cycle for crossing a page.
+        private int penalties;
+
+        // Whether cpu.elapsed has been set and has to be cleared at the exit.
+        private boolean elapsedSet;
+
+        private Translation(Code code, int page) {
+            this.code = code;
+            this.page = page;
+        }
+
+        /**
+         * Emits the bytecode for one instruction, or returns false for instructions that have to be interpreted.
+         */
+        private boolean translate(int opcode, int operand) {
+            switch (opcode) {
+                case 0xA9 -> load(A, Mode.IMMEDIATE, operand); // LDA #nn
+                case 0xA5 -> load(A, Mode.ZERO_PAGE, operand); // LDA nn
+                case 0xB5 -> load(A, Mode.ZERO_PAGE_X, operand); // LDA nn,X
+                case 0xAD -> load(A, Mode.ABSOLUTE, operand); // LDA nnnn
+                case 0xBD -> load(A, Mode.ABSOLUTE_X, operand); // LDA nnnn,X
+                case 0xB9 -> load(A, Mode.ABSOLUTE_Y, operand); // LDA nnnn,Y
+                case 0xA1 -> load(A, Mode.INDIRECT_X, operand); // LDA (nn,X)
+                case 0xB1 -> load(A, Mode.INDIRECT_Y, operand); // LDA (nn),Y
+                case 0xA2 -> load(X, Mode.IMMEDIATE, operand); // LDX #nn
+                case 0xA6 -> load(X, Mode.ZERO_PAGE, operand); // LDX nn
+                case 0xB6 -> load(X, Mode.ZERO_PAGE_Y, operand); // LDX nn,Y
+                case 0xAE -> load(X, Mode.ABSOLUTE, operand); // LDX nnnn
+                case 0xBE -> load(X, Mode.ABSOLUTE_Y, operand); // LDX nnnn,Y
+                case 0xA0 -> load(Y, Mode.IMMEDIATE, operand); // LDY #nn
+                case 0xA4 -> load(Y, Mode.ZERO_PAGE, operand); // LDY nn
+                case 0xB4 -> load(Y, Mode.ZERO_PAGE_X, operand); // LDY nn,X
+                case 0xAC -> load(Y, Mode.ABSOLUTE, operand); // LDY nnnn
+                case 0xBC -> load(Y, Mode.ABSOLUTE_X, operand); // LDY nnnn,X
+                case 0x85 -> store(A, Mode.ZERO_PAGE, operand); // STA nn
+                case 0x95 -> store(A, Mode.ZERO_PAGE_X, operand); // STA nn,X
+                case 0x8D -> store(A, Mode.ABSOLUTE, operand); // STA nnnn
+                case 0x9D -> store(A, Mode.ABSOLUTE_X, operand); // STA nnnn,X
+                case 0x99 -> store(A, Mode.ABSOLUTE_Y, operand); // STA nnnn,Y
+                case 0x81 -> store(A, Mode.INDIRECT_X, operand); // STA (nn,X)
+                case 0x91 -> store(A, Mode.INDIRECT_Y, operand); // STA (nn),Y
+                case 0x86 -> store(X, Mode.ZERO_PAGE, operand); // STX nn
+                case 0x96 -> store(X, Mode.ZERO_PAGE_Y, operand); // STX nn,Y
+                case 0x8E -> store(X, Mode.ABSOLUTE, operand); // STX nnnn
+                case 0x84 -> store(Y, Mode.ZERO_PAGE, operand); // STY nn
+                case 0x94 -> store(Y, Mode.ZERO_PAGE_X, operand); // STY nn,X
+                case 0x8C -> store(Y, Mode.ABSOLUTE, operand); // STY nnnn
+                case 0xAA -> transfer(A, X, true); // TAX
+                case 0xA8 -> transfer(A, Y, true); // TAY
+                case 0x8A -> transfer(X, A, true); // TXA
+                case 0x98 -> transfer(Y, A, true); // TYA
+                case 0xBA -> transfer(SP, X, true); // TSX
+                case 0x9A -> transfer(X, SP, false); // TXS
+                case 0xE8 -> increment(X, 1); // INX
+                case 0xC8 -> increment(Y, 1); // INY
+                case 0xCA -> increment(X, -1); // DEX
+                case 0x88 -> increment(Y, -1); // DEY
+                case 0x48 -> push(A); // PHA
+                case 0x08 -> pushStatus(); // PHP
+                case 0x68 -> pull(A); // PLA
+                case 0x28 -> pullStatus(); // PLP
+                case 0x29, 0x25, 0x35, 0x2D, 0x3D, 0x39, 0x21, 0x31 -> logic(IAND, opcode, operand); // AND
+                case 0x49, 0x45, 0x55, 0x4D, 0x5D, 0x59, 0x41, 0x51 -> logic(IXOR, opcode, operand); // EOR
+                case 0x09, 0x05, 0x15, 0x0D, 0x1D, 0x19, 0x01, 0x11 -> logic(IOR, opcode, operand); // ORA
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void load(int register, Mode mode, int operand) {
+            value(mode, operand);
+            assign(register, true);
+        }
+
+        private void store(int register, Mode mode, int operand) {
+            elapsed();
+            code.local(ALOAD, BUS_SLOT);
+            address(mode, operand, false);
+            code.local(ILOAD, register);
+            code.invoke(INVOKEINTERFACE, BUS_CLASS, "writeByte", "(II)V");
+            stored = true;
+            ended |= switch (mode) {
+                case ZERO_PAGE, ZERO_PAGE_X, ZERO_PAGE_Y -> page == 0;
+                case ABSOLUTE -> page == operand >>> 8;
+                case ABSOLUTE_X, ABSOLUTE_Y -> page == operand >>> 8 || page == ((operand + 0xFF) >>> 8 & 0xFF);
+                default -> true;
+            };
+        }
+
+        private void transfer(int source, int target, boolean setsFlags) {
+            code.local(ILOAD, source);
+            assign(target, setsFlags);
+        }
+
+        private void increment(int register, int delta) {
+            code.local(ILOAD, register);
+            code.constant(delta);
+            code.op(IADD);
+            assign(register, true);
+        }
+
+        private void push(int register) {
+            elapsed();
+            code.local(ALOAD, BUS_SLOT);
+            stackAddress();
+            code.local(ILOAD, register);
+            code.invoke(INVOKEINTERFACE, BUS_CLASS, "writeByte", "(II)V");
+            stored = true;
+            ended |= page == 1;
+            code.local(ILOAD, SP);
+            code.constant(1);
+            code.op(ISUB);
+            assign(SP, false);
+        }
+
+        private void pull(int register) {
+            pullByte();
+            assign(register, true);
+        }
+
+        private void pushStatus() {
+            flushFlags();
+            elapsed();
+            code.local(ALOAD, BUS_SLOT);
+            stackAddress();
+            code.local(ALOAD, CPU_SLOT);
+            code.invoke(INVOKEVIRTUAL, CPU_CLASS, "getStatus", "()I");
+            code.invoke(INVOKEINTERFACE, BUS_CLASS, "writeByte", "(II)V");
+            stored = true;
+            ended |= page == 1;
+            code.local(ILOAD, SP);
+            code.constant(1);
+            code.op(ISUB);
+            assign(SP, false);
+        }
+
+        private void pullStatus() {
+            code.local(ALOAD, CPU_SLOT);
+            pullByte();
+            code.invoke(INVOKEVIRTUAL, CPU_CLASS, "setStatus", "(I)V");
+            flagRegister = NONE;
+        }
+
+        // Pre-increments sp and leaves the byte it now points at on the stack.
+        private void pullByte() {
+            code.local(ILOAD, SP);
+            code.constant(1);
+            code.op(IADD);
+            assign(SP, false);
+            elapsed();
+            code.local(ALOAD, BUS_SLOT);
+            stackAddress();
+            code.invoke(INVOKEINTERFACE, BUS_CLASS, "readByte", "(I)I");
+        }
+
+        /**
+         * Emits a return to the interpreter at address if the instructions so far dropped the block.
+         */
+        private void exitIfDropped(int address) {
+            code.local(ALOAD, CPU_SLOT);
+            code.field(GETFIELD, CPU_CLASS, "blockDropped", "Z");
+            int jump = code.jump(IFEQ);
+            exit(address);
+            code.land(jump);
+        }
+
+        /**
+         * Emits the exit after the instructions so far: hands the registers, pc, counters and flags to the CPU and
+         * returns the cycles taken. Leaves the translation as it is, so it can go on after an early exit.
+         */
+        private void exit(int address) {
+            for (int register : new int[]{A, X, Y, SP}) {
+                if (written[register]) {
+                    code.local(ALOAD, CPU_SLOT);
+                    code.local(ILOAD, register);
+                    code.field(PUTFIELD, CPU_CLASS, fieldName(register), "B");
+                }
+            }
+            code.local(ALOAD, CPU_SLOT);
+            code.constant((short) address);
+            code.field(PUTFIELD, CPU_CLASS, "pc", "S");
+            if (penalties > 0) {
+                code.local(ALOAD, CPU_SLOT);
+                code.op(DUP);
+                code.field(GETFIELD, CPU_CLASS, "pageCrossings", "I");
+                code.local(ILOAD, PENALTY_SLOT);
+                code.op(IADD);
+                code.field(PUTFIELD, CPU_CLASS, "pageCrossings", "I");
+            }
+            if (instructions > 1) {
+                code.local(ALOAD, CPU_SLOT);
+                code.op(DUP);
+                code.field(GETFIELD, CPU_CLASS, "extraInstructions", "I");
+                code.constant(instructions - 1);
+                code.op(IADD);
+                code.field(PUTFIELD, CPU_CLASS, "extraInstructions", "I");
+            }
+            if (elapsedSet) {
+                code.local(ALOAD, CPU_SLOT);
+                code.constant(0);
+                code.field(PUTFIELD, CPU_CLASS, "elapsed", "I");
+            }
+            if (flagRegister != NONE) {
+                code.local(ALOAD, CPU_SLOT);
+                code.local(ILOAD, flagRegister);
+                code.invoke(INVOKEVIRTUAL, CPU_CLASS, "updateZeroNegative", "(B)V");
+            }
+            code.local(ILOAD, PENALTY_SLOT);
+            code.constant(cycles);
+            code.op(IADD);
+            code.op(IRETURN);
+        }
+
+        /**
+         * Hands Z and N to the CPU. Called before anything outside the block reads them; the exits hand them over too.
+         */
+        private void flushFlags() {
+            if (flagRegister != NONE) {
+                code.local(ALOAD, CPU_SLOT);
+                code.local(ILOAD, flagRegister);
+                code.invoke(INVOKEVIRTUAL, CPU_CLASS, "updateZeroNegative", "(B)V");
+                flagRegister = NONE;
+            }
+        }
+
+        // The addressing mode sits in the low three bits of the opcode for the whole AND/EOR/ORA group.
+        private void logic(int operation, int opcode, int operand) {
+            Mode mode = switch (opcode & 0x1F) {
+                case 0x09 -> Mode.IMMEDIATE;
+                case 0x05 -> Mode.ZERO_PAGE;
+                case 0x15 -> Mode.ZERO_PAGE_X;
+                case 0x0D -> Mode.ABSOLUTE;
+                case 0x1D -> Mode.ABSOLUTE_X;
+                case 0x19 -> Mode.ABSOLUTE_Y;
+                case 0x01 -> Mode.INDIRECT_X;
+                default -> Mode.INDIRECT_Y;
+            };
+            code.local(ILOAD, A);
+            value(mode, operand);
+            code.op(operation);
+            assign(A, true);
+        }
+
+        private void assign(int register, boolean setsFlags) {
+            code.op(I2B);
+            code.local(ISTORE, register);
+            written[register] = true;
+            if (setsFlags) {
+                flagRegister = register;
+            }
+        }
+
+        private void value(Mode mode, int operand) {
+            if (mode == Mode.IMMEDIATE) {
+                code.constant(operand);
+                return;
+            }
+            elapsed();
+            code.local(ALOAD, BUS_SLOT);
+            address(mode, operand, true);
+            code.invoke(INVOKEINTERFACE, BUS_CLASS, "readByte", "(I)I");
+        }
+
+        // Stores always take their fixed cycles, so only reads pay for crossing a page.
+        private void address(Mode mode, int operand, boolean penalty) {
+            switch (mode) {
+                case ZERO_PAGE, ABSOLUTE -> code.constant(operand);
+                case ZERO_PAGE_X -> zeroPageIndexed(operand, X);
+                case ZERO_PAGE_Y -> zeroPageIndexed(operand, Y);
+                case ABSOLUTE_X -> {
+                    code.constant(operand);
+                    indexed(X, penalty);
+                }
+                case ABSOLUTE_Y -> {
+                    code.constant(operand);
+                    indexed(Y, penalty);
+                }
+                case INDIRECT_X -> {
+                    code.local(ALOAD, CPU_SLOT);
+                    zeroPageIndexed(operand, X);
+                    code.invoke(INVOKEVIRTUAL, CPU_CLASS, "readZeroPageWord", "(I)I");
+                }
+                case INDIRECT_Y -> {
+                    code.local(ALOAD, CPU_SLOT);
+                    code.constant(operand);
+                    code.invoke(INVOKEVIRTUAL, CPU_CLASS, "readZeroPageWord", "(I)I");
+                    indexed(Y, penalty);
+                }
+                default -> throw new IllegalArgumentException(mode.name());
+            }
+        }
+
+        private void zeroPageIndexed(int base, int register) {
+            code.constant(base);
+            code.local(ILOAD, register);
+            code.op(IADD);
+            code.constant(0xFF);
+            code.op(IAND);
+        }
+
+        // Indexes the base address on the stack and optionally adds the page-crossing penalty to its local.
+        private void indexed(int register, boolean penalty) {
+            code.local(ILOAD, register);
+            code.constant(0xFF);
+            code.op(IAND);
+            code.invoke(INVOKESTATIC, CPU_CLASS, "indexed", "(II)I");
+            if (!penalty) {
+                return;
+            }
+            penalties++;
+            code.op(DUP);
+            code.invoke(INVOKESTATIC, CPU_CLASS, "crossedPage", "(I)I");
+            code.local(ILOAD, PENALTY_SLOT);
+            code.op(IADD);
+            code.local(ISTORE, PENALTY_SLOT);
+        }
+
+        // Sets cpu.elapsed to the cycles of the instructions before this one, penalties included.
+        private void elapsed() {
+            if (cycles == 0) {
+                return;
+            }
+            code.local(ALOAD, CPU_SLOT);
+            code.constant(cycles);
+            if (penalties > 0) {
+                code.local(ILOAD, PENALTY_SLOT);
+                code.op(IADD);
+            }
+            code.field(PUTFIELD, CPU_CLASS, "elapsed", "I");
+            elapsedSet = true;
+        }
+
+        private void stackAddress() {
+            code.local(ILOAD, SP);
+            code.constant(0xFF);
+            code.op(IAND);
+            code.constant(0x100);
+            code.op(IADD);
+        }
+    }
+}
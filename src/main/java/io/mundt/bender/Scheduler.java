@@ -0,0 +1,204 @@
+package io.mundt.bender;
+
+import java.util.Arrays;
+
+/**
+ * Events due at given cycles of a CPU, kept in a binary min-heap over parallel arrays. The run loop only compares the
+ * cycle counter with the earliest deadline and fires events before the first instruction starting at or after their
+ * cycle. Events due at the same cycle fire in the order they were scheduled.
+ */
+public final class Scheduler {
+    @FunctionalInterface
+    public interface Event {
+        /**
+         * Called with the cycle the event was scheduled for, which a periodic event can add its period to without
+         * drifting.
+         */
+        void fire(long cycle);
+    }
+
+    private final CPU cpu;
+
+    private long[] cycles = new long[16];
+
+    private long[] order = new long[16];
+
+    private Event[] events = new Event[16];
+
+    private int size;
+
+    private long scheduled;
+
+    Scheduler(CPU cpu) {
+        this.cpu = cpu;
+    }
+
+    public void schedule(long cycle, Event event) {
+        if (size == cycles.length) {
+            cycles = Arrays.copyOf(cycles, size * 2);
+            order = Arrays.copyOf(order, size * 2);
+            events = Arrays.copyOf(events, size * 2);
+        }
+        int index = size++;
+        cycles[index] = cycle;
+        order[index] = scheduled++;
+        events[index] = event;
+        siftUp(index);
+        if (cycle < cpu.deadline) {
+            cpu.deadline = cycle; // ends the current slice of run() in time
+        }
+    }
+
+    public void scheduleIn(long delay, Event event) {
+        schedule(cpu.getInstructionCycle() + delay, event);
+    }
+
+    /**
+     * Removes every pending occurrence of the event. Returns false if it was not scheduled.
+     */
+    public boolean cancel(Event event) {
+        int kept = 0;
+        for (int index = 0; index < size; index++) {
+            if (events[index] != event) {
+                move(index, kept++);
+            }
+        }
+        if (kept == size) {
+            return false;
+        }
+        Arrays.fill(events, kept, size, null);
+        size = kept;
+        for (int index = size / 2 - 1; index >= 0; index--) {
+            siftDown(index);
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the cycle the earliest event is due at, or Long.MAX_VALUE if none is scheduled.
+     */
+    public long nextDeadline() {
+        return size == 0 ? Long.MAX_VALUE : cycles[0];
+    }
+
+    /**
+     * Fires the events due at or before the cycle, including ones scheduled for it while firing.
+     */
+    void fireDue(long now) {
+        while (size > 0 && cycles[0] <= now) {
+            long cycle = cycles[0];
+            Event event = events[0];
+            removeAt(0);
+            event.fire(cycle);
+        }
+    }
+
+    /**
+     * Pending events as a Snapshot saves them.
+     */
+    static final class Checkpoint {
+        private final long[] cycles;
+
+        private final long[] order;
+
+        private final Event[] events;
+
+        private final long scheduled;
+
+        private Checkpoint(Scheduler scheduler) {
+            cycles = Arrays.copyOf(scheduler.cycles, scheduler.size);
+            order = Arrays.copyOf(scheduler.order, scheduler.size);
+            events = Arrays.copyOf(scheduler.events, scheduler.size);
+            scheduled = scheduler.scheduled;
+        }
+    }
+
+    Checkpoint checkpoint() {
+        return new Checkpoint(this);
+    }
+
+    /**
+     * Replaces the pending events with the saved ones, already in heap order.
+     */
+    void restore(Checkpoint checkpoint) {
+        int saved = checkpoint.cycles.length;
+        if (saved > cycles.length) {
+            cycles = new long[saved];
+            order = new long[saved];
+            events = new Event[saved];
+        }
+        System.arraycopy(checkpoint.cycles, 0, cycles, 0, saved);
+        System.arraycopy(checkpoint.order, 0, order, 0, saved);
+        System.arraycopy(checkpoint.events, 0, events, 0, saved);
+        Arrays.fill(events, saved, Math.max(saved, size), null);
+        size = saved;
+        scheduled = checkpoint.scheduled;
+        if (nextDeadline() < cpu.deadline) {
+            cpu.deadline = nextDeadline();
+        }
+    }
+
+    private void removeAt(int index) {
+        size--;
+        if (index != size) {
+            move(size, index);
+            siftDown(index);
+            siftUp(index);
+        }
+        events[size] = null;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!before(index, parent)) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(child + 1, child)) {
+                child++;
+            }
+            if (!before(child, index)) {
+                break;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private boolean before(int i, int j) {
+        return cycles[i] < cycles[j] || cycles[i] == cycles[j] && order[i] < order[j];
+    }
+
+    private void move(int from, int to) {
+        cycles[to] = cycles[from];
+        order[to] = order[from];
+        events[to] = events[from];
+    }
+
+    private void swap(int i, int j) {
+        long cycle = cycles[i];
+        cycles[i] = cycles[j];
+        cycles[j] = cycle;
+        long scheduledAt = order[i];
+        order[i] = order[j];
+        order[j] = scheduledAt;
+        Event event = events[i];
+        events[i] = events[j];
+        events[j] = event;
+    }
+}
@@ -0,0 +1,73 @@
+package io.mundt.bender;
+
+import java.util.List;
+
+/**
+ * Registers, flags, cycle count and memory contents of a machine at one point in time. Memory pages are copied on
+ * their first write after a snapshot, so taking and restoring a snapshot only costs the pages written since then.
+ * <p>
+ * The scheduler's pending events and the cycle each catch-up device was synchronized at are saved too, so restoring
+ * does not leave them on the abandoned timeline.
+ */
+public final class Snapshot {
+    private final short pc;
+
+    private final byte sp;
+
+    private final byte a, x, y;
+
+    private final int status;
+
+    private final long cycles;
+
+    private final Memory.Checkpoint memory;
+
+    private final Scheduler.Checkpoint scheduler;
+
+    private final long[] syncedCycles;
+
+    private final boolean[] deadlinesSet;
+
+    private Snapshot(CPU cpu, Memory memory) {
+        pc = cpu.pc;
+        sp = cpu.sp;
+        a = cpu.a;
+        x = cpu.x;
+        y = cpu.y;
+        status = cpu.getStatus();
+        cycles = cpu.cycles;
+        this.memory = memory.checkpoint();
+        scheduler = cpu.scheduler.checkpoint();
+        List<CatchUpDevice> devices = cpu.catchUpDevices;
+        syncedCycles = new long[devices.size()];
+        deadlinesSet = new boolean[devices.size()];
+        for (int i = 0; i < syncedCycles.length; i++) {
+            syncedCycles[i] = devices.get(i).getSyncedCycle();
+            deadlinesSet[i] = devices.get(i).hasDeadline();
+        }
+    }
+
+    public static Snapshot take(CPU cpu, Memory memory) {
+        return new Snapshot(cpu, memory);
+    }
+
+    public void restore(CPU cpu, Memory memory) {
+        cpu.pc = pc;
+        cpu.sp = sp;
+        cpu.a = a;
+        cpu.x = x;
+        cpu.y = y;
+        cpu.setStatus(status);
+        cpu.cycles = cycles;
+        memory.restore(this.memory);
+        cpu.scheduler.restore(scheduler);
+        List<CatchUpDevice> devices = cpu.catchUpDevices;
+        for (int i = 0; i < devices.size(); i++) {
+            if (i < syncedCycles.length) {
+                devices.get(i).restoreSync(syncedCycles[i], deadlinesSet[i]);
+            } else {
+                devices.get(i).restoreSync(cycles, false); // created after the snapshot
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package io.mundt.bender;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Turns an InstructionTrace dump into one line of disassembly per instruction:
+ * <pre>
+ *        1234  C000  A9 42     LDA #$42        A=00 X=00 Y=00 SP=FF P=00
+ * </pre>
+ * The cycle count and registers are those before the instruction. Run it with the dump file as the argument to print
+ * the disassembly.
+ */
+public final class TraceDecoder {
+    private TraceDecoder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: TraceDecoder <trace dump>");
+            System.exit(2);
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(Path.of(args[0])))) {
+            decode(in, System.out);
+        }
+    }
+
+    public static void decode(InputStream in, Appendable out) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != InstructionTrace.MAGIC) {
+            throw new IOException("Not an instruction trace");
+        }
+        int size = data.readInt();
+        for (int i = 0; i < size; i++) {
+            out.append(format(data.readLong(), data.readLong())).append('\n');
+        }
+    }
+
+    static String format(long state, long instruction) {
+        long cycle = state >>> 16;
+        int sp = (int) (state >>> 8) & 0xFF;
+        int status = (int) state & 0xFF;
+        int pc = (int) (instruction >>> 48) & 0xFFFF;
+        int opcode = (int) (instruction >>> 40) & 0xFF;
+        int operand = (int) (instruction >>> 24) & 0xFFFF;
+        int a = (int) (instruction >>> 16) & 0xFF;
+        int x = (int) (instruction >>> 8) & 0xFF;
+        int y = (int) instruction & 0xFF;
+
+        StringBuilder bytes = new StringBuilder(String.format("%02X", opcode));
+        for (int i = 0; i < Disassembler.operandBytes(opcode); i++) {
+            bytes.append(String.format(" %02X", (operand >>> (8 * i)) & 0xFF));
+        }
+        return String.format("%12d  %04X  %-8s  %-14s  A=%02X X=%02X Y=%02X SP=%02X P=%02X", cycle, pc, bytes,
+                Disassembler.format(pc, opcode, operand), a, x, y, sp, status);
+    }
+}
@@ -0,0 +1,173 @@
+package io.mundt.bender;
+
+import io.mundt.bender.Breakpoints.Kind;
+import io.mundt.bender.CPU.StopReason;
+
+public class BreakpointsTest extends CPUTestCase {
+    private Breakpoints breakpoints;
+
+    @Override
+    public void setUp() {
+        super.setUp();
+        breakpoints = new Breakpoints();
+        cpu.setBreakpoints(breakpoints);
+        cpu.pc = 0x12FB;
+        load(0x12FB,
+                0xA2, 0x03, // LDX #nn
+                0xA5, 0x10, // LDA nn
+                0xCA, // DEX
+                0xD0, 0xFB, // BNE back to LDA nn, on the next page
+                0x8D, 0x00, 0x02, // STA nnnn
+                0x00); // unknown opcode
+    }
+
+    public void testStopsAtBreakpoint() {
+        breakpoints.add(Kind.EXECUTE, 0x12FF);
+
+        assertEquals(StopReason.BREAKPOINT, cpu.run(1000));
+        assertEquals(0x12FF, cpu.pc & 0xFFFF);
+        assertEquals(0x03, cpu.x);
+        assertEquals(Kind.EXECUTE, breakpoints.getHitKind());
+        assertEquals(0x12FF, breakpoints.getHitAddress());
+    }
+
+    public void testContinuesFromBreakpoint() {
+        breakpoints.add(Kind.EXECUTE, 0x12FF);
+        cpu.run(1000);
+
+        assertEquals(StopReason.BREAKPOINT, cpu.run(1000));
+        assertEquals(0x12FF, cpu.pc & 0xFFFF);
+        assertEquals(0x02, cpu.x);
+        breakpoints.remove(Kind.EXECUTE, 0x12FF);
+        assertEquals(StopReason.ILLEGAL_OPCODE, cpu.run(1000));
+        assertNull(breakpoints.getHitKind());
+    }
+
+    public void testStopsAtBreakpointWhereBudgetEnded() {
+        breakpoints.add(Kind.EXECUTE, 0x12FF);
+
+        assertEquals(StopReason.BUDGET_REACHED, cpu.run(2 + 3));
+        assertEquals(0x12FF, cpu.pc & 0xFFFF);
+        assertEquals(StopReason.BREAKPOINT, cpu.run(100));
+        assertEquals(0x12FF, cpu.pc & 0xFFFF);
+        assertEquals(0x03, cpu.x);
+    }
+
+    public void testStopsAtBreakpointAfterMovingPc() {
+        breakpoints.add(Kind.EXECUTE, 0x12FF);
+        breakpoints.add(Kind.EXECUTE, 0x1302);
+        cpu.run(1000);
+
+        cpu.pc = 0x1302;
+        assertEquals(StopReason.BREAKPOINT, cpu.run(1000));
+        assertEquals(0x1302, cpu.pc & 0xFFFF);
+    }
+
+    public void testStopsAtEveryIterationOfIdleLoop() {
+        cpu.pc = 0x1234;
+        load(0x1234,
+                0xA5, 0x10, // LDA nn
+                0x29, 0x01, // AND #nn
+                0xF0, 0xFA); // BEQ back to LDA nn
+        cpu.setIdleLoopSkipping(true);
+        breakpoints.add(Kind.EXECUTE, 0x1236);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(StopReason.BREAKPOINT, cpu.run(1_000_000));
+            assertEquals(0x1236, cpu.pc & 0xFFFF);
+            assertEquals(3 + i * 8, cpu.cycles);
+        }
+    }
+
+    public void testFusedPairStopsAtBreakpointOnNextPage() {
+        for (CPU.Dispatch dispatch : CPU.Dispatch.values()) {
+            setUp();
+            cpu.setDispatch(dispatch);
+            cpu.setFusion(true);
+            breakpoints.add(Kind.EXECUTE, 0x1300); // BNE of the fused pair DEX / BNE
+
+            assertEquals(dispatch.name(), StopReason.BREAKPOINT, cpu.run(1000));
+            assertEquals(dispatch.name(), 0x1300, cpu.pc & 0xFFFF);
+            assertEquals(dispatch.name(), 0x02, cpu.x);
+        }
+    }
+
+    public void testCompiledBlockStopsAtBreakpoint() {
+        cpu.setCompileThreshold(0);
+        breakpoints.add(Kind.EXECUTE, 0x12FF); // DEX within the block from LDA nn
+
+        assertEquals(StopReason.BREAKPOINT, cpu.run(1000));
+        assertEquals(StopReason.BREAKPOINT, cpu.run(1000));
+        assertEquals(0x12FF, cpu.pc & 0xFFFF);
+        assertEquals(0x02, cpu.x);
+    }
+
+    public void testStopsAfterReadAndWrite() {
+        breakpoints.add(Kind.READ, 0x0010);
+        breakpoints.add(Kind.WRITE, 0x0200);
+        assertNotSame(memory, cpu.bus);
+
+        assertEquals(StopReason.WATCHPOINT, cpu.run(1000));
+        assertEquals(0x12FF, cpu.pc & 0xFFFF);
+        assertEquals(Kind.READ, breakpoints.getHitKind());
+        assertEquals(0x0010, breakpoints.getHitAddress());
+
+        breakpoints.remove(Kind.READ, 0x0010);
+        assertEquals(StopReason.WATCHPOINT, cpu.run(1000));
+        assertEquals(0x1305, cpu.pc & 0xFFFF);
+        assertEquals(Kind.WRITE, breakpoints.getHitKind());
+        assertEquals(0x0200, breakpoints.getHitAddress());
+    }
+
+    public void testWatchpointSeesFetchesButNotDecoding() {
+        for (CPU.Dispatch dispatch : CPU.Dispatch.values()) {
+            setUp();
+            cpu.setDispatch(dispatch);
+            cpu.setFusion(true);
+            breakpoints.add(Kind.READ, 0x1302); // opcode of STA nnnn, behind the fused pair DEX / BNE
+
+            assertEquals(dispatch.name(), StopReason.WATCHPOINT, cpu.run(1000));
+            assertEquals(dispatch.name(), 0x1305, cpu.pc & 0xFFFF);
+        }
+    }
+
+    public void testWatchingBusOnlyWhileArmed() {
+        cpu.setHeatmap(new MemoryHeatmap());
+        breakpoints.add(Kind.WRITE, 0x0200);
+        breakpoints.add(Kind.WRITE, 0x0201);
+        breakpoints.remove(Kind.WRITE, 0x0200);
+        assertNotSame(memory, MemoryHeatmap.uninstrumented(cpu.bus));
+
+        breakpoints.clear();
+        assertSame(memory, MemoryHeatmap.uninstrumented(cpu.bus));
+        cpu.setHeatmap(null);
+        assertSame(memory, cpu.bus);
+    }
+
+    public void testArmingEndsSlice() {
+        cpu.scheduler.schedule(2, cycle -> breakpoints.add(Kind.EXECUTE, 0x12FF));
+
+        assertEquals(StopReason.BREAKPOINT, cpu.run(1000));
+        assertEquals(0x12FF, cpu.pc & 0xFFFF);
+    }
+
+    public void testRemovedCpuIgnoresBreakpoints() {
+        breakpoints.add(Kind.EXECUTE, 0x12FF);
+        breakpoints.add(Kind.READ, 0x0010);
+        cpu.setBreakpoints(null);
+
+        assertSame(memory, cpu.bus);
+        assertEquals(StopReason.ILLEGAL_OPCODE, cpu.run(1000));
+    }
+
+    public void testAddAndRemove() {
+        assertTrue(breakpoints.add(Kind.READ, 0x10010));
+        assertFalse(breakpoints.add(Kind.READ, 0x0010));
+        assertTrue(breakpoints.contains(Kind.READ, 0x0010));
+        assertFalse(breakpoints.contains(Kind.WRITE, 0x0010));
+        assertTrue(breakpoints.isArmed());
+        assertTrue(breakpoints.remove(Kind.READ, 0x0010));
+        assertFalse(breakpoints.remove(Kind.READ, 0x0010));
+        assertFalse(breakpoints.isArmed());
+    }
+}
@@ -1,5 +1,6 @@
 package io.mundt.bender;
 
+import io.mundt.bender.CPU.StopReason;
 import io.mundt.bender.CPU.UnknownOpcodeException;
 import junit.framework.TestCase;
 
@@ -10,7 +11,11 @@ public class CPUTest extends TestCase {
 
     public void setUp() {
         memory = new Memory();
-        cpu = new CPU(memory);
+        cpu = createCPU(memory);
+    }
+
+    protected CPU createCPU(Memory memory) {
+        return new CPU(memory);
     }
 
     public void testReset() {
@@ -25,12 +30,12 @@ public class CPUTest extends TestCase {
         assertEquals(0, cpu.y);
 
         assertFalse(cpu.carry);
-        assertFalse(cpu.zero);
+        assertFalse(cpu.isZero());
         assertFalse(cpu.interruptDisabled);
         assertFalse(cpu.decimalMode);
         assertFalse(cpu.breakCommand);
         assertFalse(cpu.overflow);
-        assertFalse(cpu.negative);
+        assertFalse(cpu.isNegative());
     }
 
     public void testFetchByte() {
@@ -75,12 +80,12 @@ public class CPUTest extends TestCase {
     public void testSetStatus() {
         cpu.setStatus(0xDF);
         assertTrue(cpu.carry);
-        assertTrue(cpu.zero);
+        assertTrue(cpu.isZero());
         assertTrue(cpu.interruptDisabled);
         assertTrue(cpu.decimalMode);
         assertTrue(cpu.breakCommand);
         assertTrue(cpu.overflow);
-        assertTrue(cpu.negative);
+        assertTrue(cpu.isNegative());
     }
 
     public void testUnknownOpcode() {
@@ -94,6 +99,45 @@ public class CPUTest extends TestCase {
         }
     }
 
+    public void testRunStopsWhenBudgetIsReached() {
+        for (int address = 0x1234; address < 0x1244; address += 2) {
+            memory.writeByte(address, 0xA9); // LDA #nn
+            memory.writeByte(address + 1, 0x42); // #nn = 0x42
+        }
+
+        cpu.pc = 0x1234;
+        assertEquals(StopReason.BUDGET_REACHED, cpu.run(5));
+
+        assertEquals(0x123A, cpu.pc); // 3 instructions
+        assertEquals(6, cpu.cycles); // 3 * 2 cycles
+    }
+
+    public void testRunStopsAtIllegalOpcode() {
+        memory.writeByte(0x1234, 0xA9); // LDA #nn
+        memory.writeByte(0x1235, 0x42); // #nn = 0x42
+        memory.writeByte(0x1236, 0x00); // unknown opcode
+
+        cpu.pc = 0x1234;
+        assertEquals(StopReason.ILLEGAL_OPCODE, cpu.run(100));
+
+        assertEquals(0x1236, cpu.pc); // PC = unknown opcode
+        assertEquals(0x42, cpu.a);
+        assertEquals(2, cpu.cycles);
+    }
+
+    public void testRunUntil() {
+        for (int address = 0x1234; address < 0x1244; address += 2) {
+            memory.writeByte(address, 0xA9); // LDA #nn
+            memory.writeByte(address + 1, 0x42); // #nn = 0x42
+        }
+
+        cpu.pc = 0x1234;
+        assertEquals(StopReason.BREAKPOINT, cpu.runUntil(cpu -> cpu.pc == 0x1238));
+
+        assertEquals(0x1238, cpu.pc);
+        assertEquals(4, cpu.cycles);
+    }
+
     public void testLDAImmediate() throws UnknownOpcodeException {
         memory.writeByte(0x1234, 0xA9); // LDA #nn
         memory.writeByte(0x1235, 0x42); // #nn = 0x42
@@ -102,8 +146,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x42, cpu.a); // A = #nn
-        assertFalse(cpu.zero); // Z = false
-        assertFalse(cpu.negative); // N = false
+        assertFalse(cpu.isZero()); // Z = false
+        assertFalse(cpu.isNegative()); // N = false
         assertEquals(2, cycles); // 2 cycles
     }
 
@@ -116,8 +160,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.a & 0xFF); // A = [nn]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(3, cycles); // 3 cycles
     }
 
@@ -131,8 +175,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.a & 0xFF); // A = [nn + X]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -145,8 +189,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.a & 0xFF); // A = [nnnn]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -160,8 +204,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.a & 0xFF); // A = [nnnn + X]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -175,8 +219,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.a & 0xFF); // A = [nnnn + X]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(5, cycles); // 5 cycles
     }
 
@@ -190,8 +234,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.a & 0xFF); // A = [nnnn + Y]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -205,8 +249,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.a & 0xFF); // A = [nnnn + Y]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(5, cycles); // 5 cycles
     }
 
@@ -221,8 +265,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.a & 0xFF); // A = [[nn + X]]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(6, cycles); // 6 cycles
     }
 
@@ -237,8 +281,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.a & 0xFF); // A = [[nn] + Y]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(5, cycles); // 5 cycles
     }
 
@@ -253,8 +297,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.a & 0xFF); // A = [[nn] + Y]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(6, cycles); // 6 cycles
     }
 
@@ -266,8 +310,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.x & 0xFF); // X = nn
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(2, cycles); // 2 cycles
     }
 
@@ -280,8 +324,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.x & 0xFF); // X = [nn]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(3, cycles); // 3 cycles
     }
 
@@ -295,8 +339,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.x & 0xFF); // X = [nn + Y]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -309,8 +353,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.x & 0xFF); // X = [nnnn]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -324,8 +368,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.x & 0xFF); // X = [nnnn + Y]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -339,8 +383,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.x & 0xFF); // X = [nnnn + Y]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(5, cycles); // 5 cycles
     }
 
@@ -352,8 +396,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.y & 0xFF); // Y = nn
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(2, cycles); // 2 cycles
     }
 
@@ -366,8 +410,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.y & 0xFF); // Y = [nn]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(3, cycles); // 3 cycles
     }
 
@@ -381,8 +425,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.y & 0xFF); // Y = [nn + X]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -395,8 +439,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.y & 0xFF); // Y = [nnnn]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -410,8 +454,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.y & 0xFF); // Y = [nnnn + X]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -425,8 +469,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x84, cpu.y & 0xFF); // Y = [nnnn + X]
-        assertFalse(cpu.zero); // Z = false
-        assertTrue(cpu.negative); // N = true
+        assertFalse(cpu.isZero()); // Z = false
+        assertTrue(cpu.isNegative()); // N = true
         assertEquals(5, cycles); // 5 cycles
     }
 
@@ -713,6 +757,69 @@ public class CPUTest extends TestCase {
         assertEquals(4, cycles); // 4 cycles
     }
 
+    public void testSEI() throws UnknownOpcodeException {
+        memory.writeByte(0x1234, 0x78); // SEI
+
+        cpu.pc = 0x1234;
+        int cycles = cpu.step();
+
+        assertTrue(cpu.interruptDisabled);
+        assertEquals(2, cycles); // 2 cycles
+    }
+
+    public void testCLI() throws UnknownOpcodeException {
+        memory.writeByte(0x1234, 0x58); // CLI
+        cpu.interruptDisabled = true;
+
+        cpu.pc = 0x1234;
+        int cycles = cpu.step();
+
+        assertFalse(cpu.interruptDisabled);
+        assertEquals(2, cycles); // 2 cycles
+    }
+
+    public void testJSR() throws UnknownOpcodeException {
+        memory.writeByte(0x1234, 0x20); // JSR nnnn
+        memory.writeWord(0x1235, 0x5678); // nnnn = 0x5678
+        cpu.sp = 0x10;
+
+        cpu.pc = 0x1234;
+        int cycles = cpu.step();
+
+        assertEquals(0x5678, cpu.pc & 0xFFFF);
+        assertEquals(0x1236, memory.readWord(0x010F)); // last byte of the JSR
+        assertEquals(0x0E, cpu.sp); // SP -= 2
+        assertEquals(6, cycles); // 6 cycles
+    }
+
+    public void testRTS() throws UnknownOpcodeException {
+        memory.writeByte(0x1234, 0x60); // RTS
+        memory.writeWord(0x010F, 0x5677); // [SP] = return address - 1
+        cpu.sp = 0x0E;
+
+        cpu.pc = 0x1234;
+        int cycles = cpu.step();
+
+        assertEquals(0x5678, cpu.pc & 0xFFFF);
+        assertEquals(0x10, cpu.sp); // SP += 2
+        assertEquals(6, cycles); // 6 cycles
+    }
+
+    public void testRTI() throws UnknownOpcodeException {
+        memory.writeByte(0x1234, 0x40); // RTI
+        memory.writeByte(0x010E, 0x81); // [SP] = P
+        memory.writeWord(0x010F, 0x5678); // [SP + 1] = return address
+        cpu.sp = 0x0D;
+
+        cpu.pc = 0x1234;
+        int cycles = cpu.step();
+
+        assertEquals(0x81, cpu.getStatus()); // P = [SP]
+        assertEquals(0x5678, cpu.pc & 0xFFFF);
+        assertEquals(0x10, cpu.sp); // SP += 3
+        assertEquals(6, cycles); // 6 cycles
+    }
+
     public void testANDImmediate() throws UnknownOpcodeException {
         memory.writeByte(0x1234, 0x29); // AND nn
         memory.writeByte(0x1235, 0x3C); // nn = 0x3C
@@ -724,8 +831,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x30, cpu.a); // A = A & nn
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(2, cycles); // 2 cycles
     }
 
@@ -741,8 +848,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x30, cpu.a); // A = A & [nn]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(3, cycles); // 3 cycles
     }
 
@@ -759,8 +866,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x30, cpu.a); // A = A & [nn+X]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -776,8 +883,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x30, cpu.a); // A = A & [nnnn]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -794,8 +901,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x30, cpu.a); // A = A & [nnnn+X]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -812,8 +919,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x30, cpu.a); // A = A & [nnnn+X]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(5, cycles); // 5 cycles
     }
 
@@ -830,8 +937,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x30, cpu.a); // A = A & [nnnn+Y]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -848,8 +955,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x30, cpu.a); // A = A & [nnnn+Y]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(5, cycles); // 5 cycles
     }
 
@@ -868,8 +975,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x30, cpu.a); // A = A & [nn+X]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(6, cycles); // 6 cycles
     }
 
@@ -887,8 +994,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x30, cpu.a); // A = A & [nn+Y]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(5, cycles); // 5 cycles
     }
 
@@ -906,8 +1013,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x30, cpu.a); // A = A & [nn+Y]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(6, cycles); // 6 cycles
     }
 
@@ -922,8 +1029,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0xCC, cpu.a & 0xFF); // A = A ^ nn
-        assertTrue(cpu.negative); // N = 1
-        assertFalse(cpu.zero); // Z = 0
+        assertTrue(cpu.isNegative()); // N = 1
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(2, cycles); // 2 cycles
     }
 
@@ -939,8 +1046,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x88, cpu.a & 0xFF); // A = A ^ [nn]
-        assertTrue(cpu.negative); // N = 1
-        assertFalse(cpu.zero); // Z = 0
+        assertTrue(cpu.isNegative()); // N = 1
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(3, cycles); // 3 cycles
     }
 
@@ -957,8 +1064,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x88, cpu.a & 0xFF); // A = A ^ [nn+X]
-        assertTrue(cpu.negative); // N = 1
-        assertFalse(cpu.zero); // Z = 0
+        assertTrue(cpu.isNegative()); // N = 1
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -974,8 +1081,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x88, cpu.a & 0xFF); // A = A ^ [nnnn]
-        assertTrue(cpu.negative); // N = 1
-        assertFalse(cpu.zero); // Z = 0
+        assertTrue(cpu.isNegative()); // N = 1
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -992,8 +1099,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x88, cpu.a & 0xFF); // A = A ^ [nnnn+X]
-        assertTrue(cpu.negative); // N = 1
-        assertFalse(cpu.zero); // Z = 0
+        assertTrue(cpu.isNegative()); // N = 1
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -1010,8 +1117,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x88, cpu.a & 0xFF); // A = A ^ [nnnn+X]
-        assertTrue(cpu.negative); // N = 1
-        assertFalse(cpu.zero); // Z = 0
+        assertTrue(cpu.isNegative()); // N = 1
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(5, cycles); // 5 cycles
     }
 
@@ -1028,8 +1135,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x88, cpu.a & 0xFF); // A = A ^ [nnnn+Y]
-        assertTrue(cpu.negative); // N = 1
-        assertFalse(cpu.zero); // Z = 0
+        assertTrue(cpu.isNegative()); // N = 1
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -1046,8 +1153,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x88, cpu.a & 0xFF); // A = A ^ [nnnn+Y]
-        assertTrue(cpu.negative); // N = 1
-        assertFalse(cpu.zero); // Z = 0
+        assertTrue(cpu.isNegative()); // N = 1
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(5, cycles); // 5 cycles
     }
 
@@ -1065,8 +1172,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x69, cpu.a & 0xFF); // A = A ^ [nn+X]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(6, cycles); // 6 cycles
     }
 
@@ -1084,8 +1191,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x69, cpu.a & 0xFF); // A = A ^ [nn+Y]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(5, cycles); // 5 cycles
     }
 
@@ -1103,8 +1210,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x69, cpu.a & 0xFF); // A = A ^ [nn+Y]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(6, cycles); // 6 cycles
     }
 
@@ -1119,8 +1226,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0xFF, cpu.a & 0xFF); // A = A | nn
-        assertTrue(cpu.negative); // N = 1
-        assertFalse(cpu.zero); // Z = 0
+        assertTrue(cpu.isNegative()); // N = 1
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(2, cycles); // 2 cycles
     }
 
@@ -1136,8 +1243,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x77, cpu.a & 0xFF); // A = A | [nn]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(3, cycles); // 3 cycles
     }
 
@@ -1154,8 +1261,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x77, cpu.a & 0xFF); // A = A | [nn+X]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -1171,8 +1278,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x77, cpu.a & 0xFF); // A = A | [nnnn]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -1189,8 +1296,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x77, cpu.a & 0xFF); // A = A | [nnnn+X]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(4, cycles); // 4 cycles
     }
 
@@ -1207,8 +1314,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x77, cpu.a & 0xFF); // A = A | [nnnn+X]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(5, cycles); // 5 cycles
     }
 
@@ -1226,8 +1333,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x77, cpu.a & 0xFF); // A = A | [nn+X]
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(6, cycles); // 6 cycles
     }
 
@@ -1245,8 +1352,8 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x77, cpu.a & 0xFF); // A = A | [nn]+Y
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(5, cycles); // 5 cycles
     }
 
@@ -1264,8 +1371,130 @@ public class CPUTest extends TestCase {
         int cycles = cpu.step();
 
         assertEquals(0x77, cpu.a & 0xFF); // A = A | [nn]+Y
-        assertFalse(cpu.negative); // N = 0
-        assertFalse(cpu.zero); // Z = 0
+        assertFalse(cpu.isNegative()); // N = 0
+        assertFalse(cpu.isZero()); // Z = 0
         assertEquals(6, cycles); // 6 cycles
     }
+
+    public void testINX() throws UnknownOpcodeException {
+        memory.writeByte(0x1234, 0xE8); // INX
+        cpu.x = (byte) 0x7F;
+
+        cpu.pc = 0x1234;
+        int cycles = cpu.step();
+
+        assertEquals(0x80, cpu.x & 0xFF); // X++
+        assertTrue(cpu.isNegative()); // N = 1
+        assertFalse(cpu.isZero()); // Z = 0
+        assertEquals(2, cycles); // 2 cycles
+    }
+
+    public void testINY() throws UnknownOpcodeException {
+        memory.writeByte(0x1234, 0xC8); // INY
+        cpu.y = (byte) 0xFF;
+
+        cpu.pc = 0x1234;
+        int cycles = cpu.step();
+
+        assertEquals(0x00, cpu.y); // Y++ wraps around
+        assertFalse(cpu.isNegative()); // N = 0
+        assertTrue(cpu.isZero()); // Z = 1
+        assertEquals(2, cycles); // 2 cycles
+    }
+
+    public void testDEX() throws UnknownOpcodeException {
+        memory.writeByte(0x1234, 0xCA); // DEX
+        cpu.x = 0x00;
+
+        cpu.pc = 0x1234;
+        int cycles = cpu.step();
+
+        assertEquals(0xFF, cpu.x & 0xFF); // X-- wraps around
+        assertTrue(cpu.isNegative()); // N = 1
+        assertFalse(cpu.isZero()); // Z = 0
+        assertEquals(2, cycles); // 2 cycles
+    }
+
+    public void testDEY() throws UnknownOpcodeException {
+        memory.writeByte(0x1234, 0x88); // DEY
+        cpu.y = 0x01;
+
+        cpu.pc = 0x1234;
+        int cycles = cpu.step();
+
+        assertEquals(0x00, cpu.y); // Y--
+        assertFalse(cpu.isNegative()); // N = 0
+        assertTrue(cpu.isZero()); // Z = 1
+        assertEquals(2, cycles); // 2 cycles
+    }
+
+    public void testBranchNotTaken() throws UnknownOpcodeException {
+        memory.writeByte(0x1234, 0xD0); // BNE nn
+        memory.writeByte(0x1235, 0x10); // nn = +0x10
+        cpu.zero = true;
+
+        cpu.pc = 0x1234;
+        int cycles = cpu.step();
+
+        assertEquals(0x1236, cpu.pc); // next instruction
+        assertEquals(2, cycles); // 2 cycles
+    }
+
+    public void testBranchBackwardCrossingPage() throws UnknownOpcodeException {
+        memory.writeByte(0x1200, 0xD0); // BNE nn
+        memory.writeByte(0x1201, 0xF0); // nn = -0x10
+
+        cpu.pc = 0x1200;
+        int cycles = cpu.step();
+
+        assertEquals(0x11F2, cpu.pc); // 0x1202 - 0x10
+        assertEquals(4, cycles); // 2 cycles + 1 taken + 1 page crossed
+    }
+
+    public void testBPL() throws UnknownOpcodeException {
+        assertBranchTaken(0x10); // BPL nn
+    }
+
+    public void testBMI() throws UnknownOpcodeException {
+        cpu.negative = true;
+        assertBranchTaken(0x30); // BMI nn
+    }
+
+    public void testBVC() throws UnknownOpcodeException {
+        assertBranchTaken(0x50); // BVC nn
+    }
+
+    public void testBVS() throws UnknownOpcodeException {
+        cpu.overflow = true;
+        assertBranchTaken(0x70); // BVS nn
+    }
+
+    public void testBCC() throws UnknownOpcodeException {
+        assertBranchTaken(0x90); // BCC nn
+    }
+
+    public void testBCS() throws UnknownOpcodeException {
+        cpu.carry = true;
+        assertBranchTaken(0xB0); // BCS nn
+    }
+
+    public void testBNE() throws UnknownOpcodeException {
+        assertBranchTaken(0xD0); // BNE nn
+    }
+
+    public void testBEQ() throws UnknownOpcodeException {
+        cpu.zero = true;
+        assertBranchTaken(0xF0); // BEQ nn
+    }
+
+    private void assertBranchTaken(int opcode) throws UnknownOpcodeException {
+        memory.writeByte(0x1234, opcode);
+        memory.writeByte(0x1235, 0x10); // nn = +0x10
+
+        cpu.pc = 0x1234;
+        int cycles = cpu.step();
+
+        assertEquals(0x1246, cpu.pc); // 0x1236 + 0x10
+        assertEquals(3, cycles); // 2 cycles + 1 taken
+    }
 }
@@ -0,0 +1,32 @@
+package io.mundt.bender;
+
+import junit.framework.TestCase;
+
+/**
+ * Fixture for tests that run small programs: a CPU on 64K of RAM, pc at 0x1234 and an empty stack.
+ */
+public abstract class CPUTestCase extends TestCase {
+    protected Bus memory;
+
+    protected CPU cpu;
+
+    public void setUp() {
+        memory = createMemory();
+        cpu = new CPU(memory);
+        cpu.pc = 0x1234;
+        cpu.sp = (byte) 0xFF;
+    }
+
+    protected Bus createMemory() {
+        return new Memory();
+    }
+
+    /**
+     * Writes the bytes to memory directly, bypassing anything put in front of it on the CPU's bus.
+     */
+    protected void load(int address, int... bytes) {
+        for (int value : bytes) {
+            memory.writeByte(address++, value);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.mundt.bender;
+
+import java.io.IOException;
+
+import io.mundt.bender.CPU.UnknownOpcodeException;
+
+public class CallGraphProfilerTest extends CPUTestCase {
+    private CallGraphProfiler profiler;
+
+    @Override
+    public void setUp() {
+        super.setUp();
+        profiler = new CallGraphProfiler();
+        cpu.setCallGraphProfiler(profiler);
+        cpu.pc = 0x1000;
+        cpu.sp = (byte) 0xFF;
+    }
+
+    public void testNestedCalls() throws IOException {
+        load(0x1000,
+                0x20, 0x00, 0x20, // JSR nnnn
+                0x20, 0x00, 0x30, // JSR nnnn
+                0x00); // unknown opcode
+        load(0x2000,
+                0x20, 0x00, 0x30, // JSR nnnn
+                0x60); // RTS
+        load(0x3000,
+                0xA9, 0x01, // LDA #nn
+                0x60); // RTS
+
+        cpu.run(1000);
+        assertEquals(1, profiler.getCalls(0x2000));
+        assertEquals(2, profiler.getCalls(0x3000));
+        assertEquals(6 + 6 + 2 + 6, profiler.getInclusiveCycles(0x2000));
+        assertEquals(6 + 6, profiler.getExclusiveCycles(0x2000));
+        assertEquals(2 * (2 + 6), profiler.getInclusiveCycles(0x3000));
+        assertEquals(2 * (2 + 6), profiler.getExclusiveCycles(0x3000));
+        assertEquals(cpu.cycles, profiler.getTotalCycles());
+        assertEquals(0, profiler.getDepth());
+
+        StringBuilder collapsed = new StringBuilder();
+        profiler.writeCollapsed(collapsed);
+        assertEquals(String.join("\n",
+                "root 12",
+                "root;2000 12",
+                "root;2000;3000 8",
+                "root;3000 8",
+                ""), collapsed.toString());
+    }
+
+    public void testDiscardedReturnAddressEndsCall() {
+        load(0x1000,
+                0x20, 0x00, 0x20); // JSR nnnn
+        load(0x2000,
+                0x68, // PLA
+                0x68, // PLA
+                0xA9, 0x01, // LDA #nn
+                0x00); // unknown opcode
+
+        cpu.run(1000);
+        assertEquals(0, profiler.getDepth());
+        assertEquals(4 + 4, profiler.getInclusiveCycles(0x2000)); // the JSR counts for the caller
+    }
+
+    public void testRTSAsJumpKeepsCall() {
+        load(0x1000,
+                0x20, 0x00, 0x20, // JSR nnnn
+                0x00); // unknown opcode
+        load(0x2000,
+                0xA9, 0x30, // LDA #nn
+                0x48, // PHA
+                0xA9, 0xFF, // LDA #nn
+                0x48, // PHA
+                0x60); // RTS to 0x3100
+        load(0x3100,
+                0xA9, 0x01, // LDA #nn
+                0x60); // RTS back to the caller
+
+        cpu.run(1000);
+        assertEquals(0x1003, cpu.pc);
+        assertEquals(0, profiler.getDepth());
+        assertEquals(1, profiler.getCalls(0x2000));
+        assertEquals(2 + 3 + 2 + 3 + 6 + 2 + 6, profiler.getExclusiveCycles(0x2000));
+    }
+
+    public void testInterruptHandlerIsACall() throws UnknownOpcodeException, IOException {
+        memory.writeWord(CPU.IRQ_VECTOR, 0x4000);
+        load(0x1000,
+                0xA9, 0x01); // LDA #nn
+        load(0x4000,
+                0x40); // RTI
+        cpu.assertIrq(1);
+
+        cpu.step();
+        assertEquals(1, profiler.getDepth());
+        cpu.releaseIrq(1);
+        cpu.step();
+        assertEquals(0, profiler.getDepth());
+        assertEquals(7 + 6, profiler.getInclusiveCycles(0x4000));
+    }
+
+    public void testRecursionCountsOutermostCall() {
+        load(0x1000,
+                0xA2, 0x03, // LDX #nn
+                0x20, 0x00, 0x20, // JSR nnnn
+                0x00); // unknown opcode
+        load(0x2000,
+                0xCA, // DEX
+                0xF0, 0x03, // BEQ to RTS
+                0x20, 0x00, 0x20, // JSR nnnn
+                0x60); // RTS
+
+        cpu.run(1000);
+        assertEquals(3, profiler.getCalls(0x2000));
+        assertEquals(cpu.cycles - 2 - 6, profiler.getInclusiveCycles(0x2000));
+    }
+}
@@ -0,0 +1,134 @@
+package io.mundt.bender;
+
+public class CatchUpDeviceTest extends CPUTestCase {
+    private PageTableBus bus;
+
+    private Timer timer;
+
+    @Override
+    public void setUp() {
+        super.setUp();
+        timer = new Timer(cpu);
+        bus.mapDevice(0xD0, 1, timer);
+    }
+
+    @Override
+    protected Bus createMemory() {
+        bus = new PageTableBus();
+        return bus;
+    }
+
+    public void testIdleDeviceIsNotTouched() {
+        for (int address = 0x1234; address < 0x1334; address += 2) {
+            bus.writeByte(address, 0xA9); // LDA #nn
+        }
+
+        cpu.run(200);
+        assertEquals(0, timer.catchUps);
+        assertEquals(0, timer.getSyncedCycle());
+    }
+
+    public void testRegisterAccessCatchesUp() {
+        load(0x1234,
+                0xA9, 0x01, // LDA #nn
+                0xA9, 0x02, // LDA #nn
+                0xAD, 0x00, 0xD0); // LDA nnnn
+        timer.counter = 100;
+
+        cpu.run(8);
+        assertEquals(100 - 4, cpu.a);
+        assertEquals(4, timer.getSyncedCycle());
+        assertEquals(1, timer.catchUps);
+    }
+
+    public void testDeadlineCatchesUp() {
+        for (int address = 0x1239; address < 0x1339; address += 2) {
+            bus.writeByte(address, 0xA9); // LDA #nn
+        }
+        load(0x1234,
+                0xA9, 0x10, // LDA #nn
+                0x8D, 0x00, 0xD0); // STA nnnn starts the timer at 0x10
+
+        cpu.run(100);
+        assertEquals(2 + 0x10, timer.expiredAt);
+        assertEquals(2 + 0x10, timer.getSyncedCycle());
+        assertEquals(0, timer.counter);
+        assertEquals(2, timer.catchUps);
+    }
+
+    public void testNewDeadlineReplacesOldOne() {
+        for (int address = 0x1234; address < 0x1334; address += 2) {
+            bus.writeByte(address, 0xA9); // LDA #nn
+        }
+        load(0x1234,
+                0xA9, 0x10, // LDA #nn
+                0x8D, 0x00, 0xD0, // STA nnnn starts the timer at 0x10
+                0xA9, 0x40, // LDA #nn
+                0x8D, 0x00, 0xD0); // STA nnnn restarts it at 0x40
+
+        cpu.run(200);
+        assertEquals(8 + 0x40, timer.expiredAt);
+    }
+
+    public void testAccessInsideBlockOrPairSyncsToInstruction() {
+        for (CPU.Dispatch dispatch : CPU.Dispatch.values()) {
+            setUp();
+            cpu.setDispatch(dispatch);
+            cpu.setFusion(true);
+            if (dispatch == CPU.Dispatch.RECOMPILE) {
+                cpu.setCompileThreshold(0);
+            }
+            load(0x1234,
+                    0xA2, 0x01, // LDX #nn
+                    0xA0, 0x02, // LDY #nn
+                    0xA2, 0x03, // LDX #nn
+                    0xAD, 0x00, 0xD0, // LDA nnnn reads the timer at cycle 6
+                    0x85, 0x10, // STA nn
+                    0xA9, 0x20, // LDA #nn
+                    0x8D, 0x00, 0xD0, // STA nnnn, fused with LDA #nn, writes the timer at cycle 15
+                    0x00); // unknown opcode
+            timer.counter = 100;
+
+            cpu.run(100);
+            assertEquals(dispatch.name(), 100 - 6, memory.readByte(0x0010));
+            assertEquals(dispatch.name(), 15, timer.getSyncedCycle());
+            assertEquals(dispatch.name(), 0, cpu.elapsed);
+        }
+    }
+
+
+    // Counts down once per cycle from the value written to it and stops at 0.
+    private static final class Timer extends CatchUpDevice {
+        long counter;
+
+        long expiredAt = -1;
+
+        int catchUps;
+
+        Timer(CPU cpu) {
+            super(cpu);
+        }
+
+        @Override
+        protected void catchUp(long cycles) {
+            catchUps++;
+            counter = Math.max(0, counter - cycles);
+        }
+
+        @Override
+        protected int read(int address) {
+            return (int) counter;
+        }
+
+        @Override
+        protected void write(int address, int value) {
+            counter = value;
+            setDeadline(getSyncedCycle() + value);
+        }
+
+        @Override
+        protected void deadline(long cycle) {
+            expiredAt = cycle;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package io.mundt.bender;
+
+import junit.framework.TestCase;
+
+public class DisassemblerTest extends TestCase {
+    public void testAddressingModes() {
+        assertEquals("LDA #$42", Disassembler.format(0x1234, 0xA9, 0x42));
+        assertEquals("LDA $10,X", Disassembler.format(0x1234, 0xB5, 0x10));
+        assertEquals("STA $2000,Y", Disassembler.format(0x1234, 0x99, 0x2000));
+        assertEquals("LDA ($10),Y", Disassembler.format(0x1234, 0xB1, 0x10));
+        assertEquals("PHA", Disassembler.format(0x1234, 0x48, 0));
+    }
+
+    public void testBranchShowsTarget() {
+        assertEquals("BNE $1230", Disassembler.format(0x1234, 0xD0, 0xFA));
+        assertEquals("BEQ $1246", Disassembler.format(0x1234, 0xF0, 0x10));
+    }
+
+    public void testUnknownOpcode() {
+        assertEquals(".byte $00", Disassembler.format(0x1234, 0x00, 0));
+        assertEquals(-1, Disassembler.operandBytes(0x00));
+    }
+
+    public void testOperandBytesMatchCPU() {
+        for (int opcode = 0; opcode < 0x100; opcode++) {
+            if (OpcodeTable.HANDLERS[opcode] != null) {
+                assertEquals(Integer.toHexString(opcode), OpcodeTable.OPERAND_BYTES[opcode],
+                        Disassembler.operandBytes(opcode));
+            } else {
+                assertEquals(-1, Disassembler.operandBytes(opcode));
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package io.mundt.bender;
+
+import io.mundt.bender.CPU.StopReason;
+import io.mundt.bender.CPU.UnknownOpcodeException;
+
+public class FusedCPUTest extends CPUTest {
+    @Override
+    protected CPU createCPU(Memory memory) {
+        CPU cpu = new CPU(memory);
+        cpu.setDispatch(CPU.Dispatch.PREDECODE);
+        cpu.setFusion(true);
+        return cpu;
+    }
+
+    public void testFusedPairIsOneStep() throws UnknownOpcodeException {
+        Memory memory = new Memory();
+        CPU cpu = createCPU(memory);
+        memory.writeByte(0x1234, 0xA5); // LDA nn
+        memory.writeByte(0x1235, 0x10); // nn = 0x10
+        memory.writeByte(0x1236, 0x8D); // STA nnnn
+        memory.writeWord(0x1237, 0x2000); // nnnn = 0x2000
+        memory.writeByte(0x0010, 0x84);
+
+        cpu.pc = 0x1234;
+        int cycles = cpu.step();
+
+        assertEquals(0x1239, cpu.pc);
+        assertEquals(0x84, memory.readByte(0x2000));
+        assertTrue(cpu.isNegative());
+        assertEquals(3 + 4, cycles);
+    }
+
+    public void testCopyLoop() {
+        Memory memory = new Memory();
+        CPU cpu = createCPU(memory);
+        memory.writeByte(0x1234, 0xA0); // LDY #nn
+        memory.writeByte(0x1235, 0x04); // #nn = 4
+        memory.writeByte(0x1236, 0xB1); // LDA (nn),Y
+        memory.writeByte(0x1237, 0x10); // nn = 0x10
+        memory.writeByte(0x1238, 0x91); // STA (nn),Y
+        memory.writeByte(0x1239, 0x12); // nn = 0x12
+        memory.writeByte(0x123A, 0x88); // DEY
+        memory.writeByte(0x123B, 0xD0); // BNE nn
+        memory.writeByte(0x123C, 0xF9); // nn = -7
+        memory.writeWord(0x0010, 0x20FE); // source
+        memory.writeWord(0x0012, 0x3000); // target
+        for (int i = 0; i < 4; i++) {
+            memory.writeByte(0x20FF + i, 0x11 * (i + 1));
+        }
+
+        cpu.pc = 0x1234;
+        assertEquals(StopReason.ILLEGAL_OPCODE, cpu.run(1000));
+
+        assertEquals(0x123D, cpu.pc);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0x11 * (i + 1), memory.readByte(0x3001 + i));
+        }
+        // LDY, 4 * (LDA (nn),Y + STA (nn),Y + DEY), 3 reads crossing into 0x2100, 3 taken and 1 untaken BNE
+        assertEquals(2 + 4 * (5 + 6 + 2) + 3 + 3 * 3 + 2, cpu.cycles);
+    }
+
+    public void testConditionStopsInsidePair() {
+        Memory memory = new Memory();
+        CPU cpu = createCPU(memory);
+        memory.writeByte(0x1234, 0xCA); // DEX
+        memory.writeByte(0x1235, 0xD0); // BNE nn
+        memory.writeByte(0x1236, 0xFD); // nn = -3
+
+        cpu.pc = 0x1234;
+        cpu.x = 3;
+        assertEquals(StopReason.BREAKPOINT, cpu.runUntil(c -> c.pc == 0x1235));
+
+        assertEquals(2, cpu.x);
+        assertEquals(2, cpu.cycles);
+    }
+
+    public void testWriteToSecondInstructionIsSeen() throws UnknownOpcodeException {
+        Memory memory = new Memory();
+        CPU cpu = createCPU(memory);
+        memory.writeByte(0x1234, 0xA9); // LDA #nn
+        memory.writeByte(0x1235, 0x42); // #nn = 0x42
+        memory.writeByte(0x1236, 0x85); // STA nn
+        memory.writeByte(0x1237, 0x10); // nn = 0x10
+
+        cpu.pc = 0x1234;
+        cpu.step();
+        memory.writeByte(0x1237, 0x20);
+        cpu.pc = 0x1234;
+        cpu.step();
+
+        assertEquals(0x42, memory.readByte(0x0020));
+    }
+}
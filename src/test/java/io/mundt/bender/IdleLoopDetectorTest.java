@@ -0,0 +1,128 @@
+package io.mundt.bender;
+
+public class IdleLoopDetectorTest extends CPUTestCase {
+    private static final int STATUS = 0x10;
+
+    private int statusReads;
+
+    @Override
+    protected Bus createMemory() {
+        return new Memory() {
+            @Override
+            public int readByte(int address) {
+                if (address == STATUS) {
+                    statusReads++;
+                }
+                return super.readByte(address);
+            }
+        };
+    }
+
+    public void testPollingLoopIsSkipped() {
+        load(0x1234,
+                0xA5, STATUS, // LDA nn
+                0x29, 0x01, // AND #nn
+                0xF0, 0xFA); // BEQ back to LDA
+
+        for (CPU.Dispatch dispatch : CPU.Dispatch.values()) {
+            CPU skipping = createCPU(dispatch, true);
+            statusReads = 0;
+            skipping.run(1_000_000);
+            assertTrue(dispatch + ": " + statusReads, statusReads < 10);
+
+            CPU executing = createCPU(dispatch, false);
+            executing.run(1_000_000);
+            assertSameState(executing, skipping);
+        }
+    }
+
+    public void testFusedPollingLoopIsSkipped() {
+        load(0x1234,
+                0xA5, STATUS, // LDA nn
+                0x29, 0x01, // AND #nn
+                0xF0, 0xFA); // BEQ back to LDA
+        CPU cpu = createCPU(CPU.Dispatch.PREDECODE, true);
+        cpu.setFusion(true);
+
+        cpu.run(1_000_000);
+        assertTrue(statusReads < 10);
+    }
+
+    public void testSkippingStartsOverInEveryRun() {
+        load(0x1234,
+                0xA5, STATUS, // LDA nn
+                0x29, 0x01, // AND #nn
+                0xF0, 0xFA); // BEQ back to LDA
+        CPU cpu = createCPU(CPU.Dispatch.SWITCH, true);
+        cpu.run(3 * 8);
+
+        statusReads = 0;
+        cpu.run(1000);
+        // Three iterations, the last two matching, then all but the last of the rest are skipped.
+        assertEquals(3 + 1, statusReads);
+        assertEquals(3 * 8 + 1000, cpu.cycles);
+    }
+
+    public void testLoopThatWritesIsNotSkipped() {
+        load(0x1234,
+                0xA5, STATUS, // LDA nn
+                0x85, 0x11, // STA nn
+                0xF0, 0xFA); // BEQ back to LDA
+        CPU cpu = createCPU(CPU.Dispatch.SWITCH, true);
+
+        cpu.run(100_000);
+        assertTrue(statusReads > 10_000);
+    }
+
+    public void testLoopThatChangesRegistersIsNotSkipped() {
+        load(0x1234,
+                0xE8, // INX
+                0xA5, STATUS, // LDA nn
+                0xF0, 0xFB); // BEQ back to INX
+        CPU cpu = createCPU(CPU.Dispatch.SWITCH, true);
+
+        cpu.run(100_000);
+        assertTrue(statusReads > 10_000);
+    }
+
+    public void testRunUntilSeesEveryIteration() {
+        load(0x1234,
+                0xA5, STATUS, // LDA nn
+                0xF0, 0xFC); // BEQ back to LDA
+        CPU cpu = createCPU(CPU.Dispatch.SWITCH, true);
+
+        cpu.runUntil(c -> c.cycles >= 60_000);
+        assertEquals(60_000, cpu.cycles);
+        assertEquals(10_000, statusReads);
+    }
+
+    public void testOffByDefault() {
+        load(0x1234,
+                0xA5, STATUS, // LDA nn
+                0xF0, 0xFC); // BEQ back to LDA
+        CPU cpu = new CPU(memory);
+        cpu.pc = 0x1234;
+
+        assertFalse(cpu.isIdleLoopSkipping());
+        cpu.run(60_000);
+        assertEquals(10_000, statusReads);
+    }
+
+    private CPU createCPU(CPU.Dispatch dispatch, boolean skipping) {
+        CPU cpu = new CPU(memory);
+        cpu.setDispatch(dispatch);
+        cpu.setIdleLoopSkipping(skipping);
+        cpu.pc = 0x1234;
+        return cpu;
+    }
+
+    private static void assertSameState(CPU expected, CPU actual) {
+        assertEquals(expected.cycles, actual.cycles);
+        assertEquals(expected.pc, actual.pc);
+        assertEquals(expected.a, actual.a);
+        assertEquals(expected.x, actual.x);
+        assertEquals(expected.y, actual.y);
+        assertEquals(expected.sp, actual.sp);
+        assertEquals(expected.getStatus(), actual.getStatus());
+    }
+}
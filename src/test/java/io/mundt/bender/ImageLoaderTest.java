@@ -0,0 +1,90 @@
+package io.mundt.bender;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import junit.framework.TestCase;
+
+public class ImageLoaderTest extends TestCase {
+    private Path file;
+
+    public void setUp() throws IOException {
+        file = Files.createTempFile("bender", ".bin");
+    }
+
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    public void testLoadBinary() throws IOException {
+        Files.write(file, new byte[]{0x12, 0x34, 0x56});
+        Memory memory = new Memory();
+        ImageLoader.loadBinary(memory, 0x1234, file);
+        assertEquals(0x12, memory.readByte(0x1234));
+        assertEquals(0x34, memory.readByte(0x1235));
+        assertEquals(0x56, memory.readByte(0x1236));
+    }
+
+    public void testLoadBinaryWrapsAround() throws IOException {
+        Files.write(file, new byte[]{0x12, 0x34});
+        OffHeapMemory memory = new OffHeapMemory();
+        ImageLoader.loadBinary(memory, 0xFFFF, file);
+        assertEquals(0x12, memory.readByte(0xFFFF));
+        assertEquals(0x34, memory.readByte(0x0000));
+    }
+
+    public void testMapRom() throws IOException {
+        byte[] image = new byte[0x300];
+        image[0x000] = 0x12;
+        image[0x2FF] = 0x34;
+        Files.write(file, image);
+        PageTableBus bus = new PageTableBus();
+        ImageLoader.mapRom(bus, 0xE0, file);
+
+        assertEquals(0x12, bus.readByte(0xE000));
+        assertEquals(0x34, bus.readByte(0xE2FF));
+        bus.writeByte(0xE000, 0x56);
+        assertEquals(0x12, bus.readByte(0xE000));
+        bus.writeByte(0xE300, 0x56);
+        assertEquals(0x56, bus.readByte(0xE300)); // RAM after the image
+    }
+
+    public void testLoadIntelHex() throws IOException {
+        String hex = String.join("\n",
+                ":0300300002337A1E",
+                ":020000040000FA",
+                ":0400000500001234B1",
+                ":00000001FF");
+        Memory memory = new Memory();
+        int start = ImageLoader.loadIntelHex(memory, new BufferedReader(new StringReader(hex)));
+
+        assertEquals(0x02, memory.readByte(0x0030));
+        assertEquals(0x33, memory.readByte(0x0031));
+        assertEquals(0x7A, memory.readByte(0x0032));
+        assertEquals(0x1234, start);
+    }
+
+    public void testLoadIntelHexRejectsBadChecksum() {
+        String hex = ":0300300002337A1F\n:00000001FF";
+        try {
+            ImageLoader.loadIntelHex(new Memory(), new BufferedReader(new StringReader(hex)));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // pass
+        }
+    }
+
+    public void testLoadIntelHexRejectsShortRecords() {
+        for (String record : new String[]{":00000004FC", ":020000051234B3"}) {
+            try {
+                ImageLoader.loadIntelHex(new Memory(), new BufferedReader(new StringReader(record + "\n:00000001FF")));
+                fail("Expected IOException for " + record);
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Line 1: record type"));
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package io.mundt.bender;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import io.mundt.bender.CPU.UnknownOpcodeException;
+
+public class InstructionTraceTest extends CPUTestCase {
+    @Override
+    public void setUp() {
+        super.setUp();
+        cpu.sp = (byte) 0xFF;
+    }
+
+    public void testCapacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(1, new InstructionTrace(1).capacity());
+        assertEquals(8, new InstructionTrace(5).capacity());
+        assertEquals(8, new InstructionTrace(8).capacity());
+    }
+
+    public void testRecordsEveryInstruction() throws IOException {
+        load(0x1234,
+                0xA9, 0x42, // LDA #nn
+                0x8D, 0x00, 0x20, // STA nnnn
+                0xA2, 0x80, // LDX #nn
+                0xD0, 0xF7); // BNE back to LDA
+        memory.writeByte(0x123D, 0x00); // unknown opcode behind the loop
+        InstructionTrace trace = new InstructionTrace(16);
+        cpu.setTrace(trace);
+
+        cpu.run(2 + 4 + 2 + 3);
+        assertEquals(4, trace.size());
+        assertEquals(String.join("\n",
+                "           0  1234  A9 42     LDA #$42        A=00 X=00 Y=00 SP=FF P=00",
+                "           2  1236  8D 00 20  STA $2000       A=42 X=00 Y=00 SP=FF P=00",
+                "           6  1239  A2 80     LDX #$80        A=42 X=00 Y=00 SP=FF P=00",
+                "           8  123B  D0 F7     BNE $1234       A=42 X=80 Y=00 SP=FF P=80",
+                ""), decode(trace));
+    }
+
+    public void testKeepsLastInstructions() throws IOException, UnknownOpcodeException {
+        for (int i = 0; i < 10; i++) {
+            memory.writeByte(0x1234 + 2 * i, 0xA9); // LDA #nn
+            memory.writeByte(0x1235 + 2 * i, i);
+        }
+        InstructionTrace trace = new InstructionTrace(4);
+        cpu.setTrace(trace);
+
+        for (int i = 0; i < 10; i++) {
+            cpu.step();
+        }
+        assertEquals(10, trace.getCount());
+        assertEquals(4, trace.size());
+        String[] lines = decode(trace).split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0], lines[0].contains("LDA #$06"));
+        assertTrue(lines[3], lines[3].contains("LDA #$09"));
+    }
+
+    public void testTracesEachInstructionOfFusedPairs() {
+        cpu.setDispatch(CPU.Dispatch.PREDECODE);
+        cpu.setFusion(true);
+        load(0x1234,
+                0xA9, 0x42, // LDA #nn
+                0x85, 0x10); // STA nn
+        InstructionTrace trace = new InstructionTrace(4);
+        cpu.setTrace(trace);
+
+        cpu.run(5);
+        assertEquals(2, trace.size());
+    }
+
+    public void testTracingOff() throws UnknownOpcodeException {
+        load(0x1234,
+                0xA9, 0x42); // LDA #nn
+        InstructionTrace trace = new InstructionTrace(4);
+        cpu.setTrace(trace);
+        cpu.setTrace(null);
+
+        cpu.step();
+        assertEquals(0, trace.getCount());
+    }
+
+    public void testDecoderRejectsOtherData() {
+        try {
+            TraceDecoder.decode(new ByteArrayInputStream(new byte[8]), new StringBuilder());
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    private static String decode(InstructionTrace trace) throws IOException {
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        trace.dump(dump);
+        StringBuilder text = new StringBuilder();
+        TraceDecoder.decode(new ByteArrayInputStream(dump.toByteArray()), text);
+        return text.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package io.mundt.bender;
+
+import io.mundt.bender.CPU.StopReason;
+import io.mundt.bender.CPU.UnknownOpcodeException;
+import junit.framework.TestCase;
+
+public class InterruptTest extends TestCase {
+    private Memory memory;
+
+    private CPU cpu;
+
+    public void setUp() {
+        memory = new Memory();
+        cpu = new CPU(memory);
+        memory.writeWord(CPU.IRQ_VECTOR, 0x2000);
+        memory.writeWord(CPU.NMI_VECTOR, 0x3000);
+        memory.writeByte(0x1234, 0xA9); // LDA #nn
+        memory.writeByte(0x1235, 0x42); // #nn = 0x42
+        cpu.pc = 0x1234;
+        cpu.sp = (byte) 0xFF;
+    }
+
+    public void testIrqPushesPcAndStatus() throws UnknownOpcodeException {
+        cpu.carry = true;
+        cpu.breakCommand = true;
+        cpu.assertIrq(1);
+
+        assertEquals(7, cpu.step());
+        assertEquals(0x2000, cpu.pc);
+        assertEquals(0x12, memory.readByte(0x01FF));
+        assertEquals(0x34, memory.readByte(0x01FE));
+        assertEquals(0x20 | CPU.CARRY_FLAG, memory.readByte(0x01FD)); // B clear, bit 5 set
+        assertEquals(0xFC, cpu.sp & 0xFF);
+        assertTrue(cpu.interruptDisabled);
+        assertEquals(7, cpu.cycles);
+    }
+
+    public void testIrqIsMaskedWhileInterruptsAreDisabled() throws UnknownOpcodeException {
+        cpu.interruptDisabled = true;
+        cpu.assertIrq(1);
+
+        assertEquals(2, cpu.step());
+        assertEquals(0x1236, cpu.pc);
+        assertTrue(cpu.isIrqAsserted());
+    }
+
+    public void testIrqStaysAssertedUntilAllSourcesRelease() throws UnknownOpcodeException {
+        memory.writeByte(0x2000, 0x58); // CLI
+        memory.writeByte(0x2001, 0xA9); // LDA #nn
+        cpu.assertIrq(1 | 2);
+
+        cpu.step();
+        cpu.step();
+        cpu.releaseIrq(1);
+        assertEquals(7, cpu.step()); // source 2 still asserts the line
+        assertEquals(0x2000, cpu.pc);
+
+        cpu.releaseIrq(2);
+        assertFalse(cpu.isIrqAsserted());
+        assertEquals(2, cpu.step()); // CLI
+        assertEquals(2, cpu.step()); // LDA #nn
+        assertEquals(0x2003, cpu.pc);
+    }
+
+    public void testNmiIgnoresInterruptDisableAndIsTakenOnce() throws UnknownOpcodeException {
+        memory.writeByte(0x3000, 0xA9); // LDA #nn
+        cpu.interruptDisabled = true;
+        cpu.triggerNmi();
+
+        assertEquals(7, cpu.step());
+        assertEquals(0x3000, cpu.pc);
+        assertEquals(2, cpu.step());
+        assertEquals(0x3002, cpu.pc);
+    }
+
+    public void testNmiTakesPrecedenceOverIrq() throws UnknownOpcodeException {
+        cpu.assertIrq(1);
+        cpu.triggerNmi();
+
+        cpu.step();
+        assertEquals(0x3000, cpu.pc);
+    }
+
+    public void testRTIReturnsToInterruptedCode() throws UnknownOpcodeException {
+        memory.writeByte(0x2000, 0x40); // RTI
+        cpu.assertIrq(1);
+
+        cpu.step();
+        cpu.releaseIrq(1);
+        assertEquals(6, cpu.step());
+        assertEquals(0x1234, cpu.pc);
+        assertFalse(cpu.interruptDisabled);
+        assertEquals(0xFF, cpu.sp & 0xFF);
+    }
+
+    public void testNmiFromAnotherThreadStopsSpinningCPU() throws InterruptedException {
+        memory.writeByte(0x1234, 0xF0); // BEQ nn
+        memory.writeByte(0x1235, 0xFE); // back to itself
+        memory.writeByte(0x3000, 0x00); // unknown opcode
+        cpu.zero = true;
+
+        Thread thread = new Thread(() -> {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            cpu.triggerNmi();
+        });
+        thread.start();
+
+        assertEquals(StopReason.ILLEGAL_OPCODE, cpu.run(Long.MAX_VALUE));
+        assertEquals(0x3000, cpu.pc);
+        thread.join();
+    }
+}
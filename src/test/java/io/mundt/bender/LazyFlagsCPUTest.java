@@ -0,0 +1,42 @@
+package io.mundt.bender;
+
+import io.mundt.bender.CPU.UnknownOpcodeException;
+
+public class LazyFlagsCPUTest extends CPUTest {
+    @Override
+    protected CPU createCPU(Memory memory) {
+        CPU cpu = new CPU(memory);
+        cpu.setLazyFlags(true);
+        return cpu;
+    }
+
+    public void testSyncFlags() throws UnknownOpcodeException {
+        Memory memory = new Memory();
+        CPU cpu = createCPU(memory);
+        memory.writeByte(0x1234, 0xA9); // LDA #nn
+        memory.writeByte(0x1235, 0x00); // #nn = 0x00
+
+        cpu.pc = 0x1234;
+        cpu.step();
+
+        assertFalse(cpu.zero); // not computed yet
+        assertTrue(cpu.isZero());
+        cpu.syncFlags();
+        assertTrue(cpu.zero);
+        assertFalse(cpu.negative);
+    }
+
+    public void testSwitchingToEagerFlagsSyncs() throws UnknownOpcodeException {
+        Memory memory = new Memory();
+        CPU cpu = createCPU(memory);
+        memory.writeByte(0x1234, 0xA9); // LDA #nn
+        memory.writeByte(0x1235, 0x84); // #nn = 0x84
+
+        cpu.pc = 0x1234;
+        cpu.step();
+        cpu.setLazyFlags(false);
+
+        assertFalse(cpu.zero);
+        assertTrue(cpu.negative);
+    }
+}
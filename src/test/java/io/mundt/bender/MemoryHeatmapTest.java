@@ -0,0 +1,101 @@
+package io.mundt.bender;
+
+import java.io.IOException;
+
+public class MemoryHeatmapTest extends CPUTestCase {
+    private MemoryHeatmap heatmap;
+
+    @Override
+    public void setUp() {
+        super.setUp();
+        heatmap = new MemoryHeatmap();
+        load(0x1234,
+                0xA5, 0x10, // LDA nn
+                0x8D, 0x00, 0x02, // STA nnnn
+                0x48, // PHA
+                0x48, // PHA
+                0x68, // PLA
+                0x00); // unknown opcode
+    }
+
+    public void testCountsAccesses() {
+        cpu.setHeatmap(heatmap);
+        cpu.run(1000);
+
+        assertEquals(1, heatmap.getReads(0x0010));
+        assertEquals(1, heatmap.getWrites(0x0200));
+        assertEquals(1, heatmap.getWrites(0x01FE));
+        assertEquals(1, heatmap.getReads(0x01FE));
+        assertEquals(1, heatmap.getExecutes(0x1234));
+        assertEquals(1, heatmap.getExecutes(0x1239));
+        assertEquals(0, heatmap.getExecutes(0x1235));
+        assertEquals(2, heatmap.getMaxStackDepth());
+    }
+
+    public void testTracingIsNotCounted() {
+        cpu.setHeatmap(heatmap);
+        cpu.setTrace(new InstructionTrace(16));
+        cpu.setCallGraphProfiler(new CallGraphProfiler());
+        cpu.run(1000);
+
+        assertEquals(1, heatmap.getReads(0x1234));
+        assertEquals(1, heatmap.getReads(0x1235));
+        assertEquals(1, heatmap.getReads(0x1236));
+    }
+
+    public void testPages() throws IOException {
+        cpu.setHeatmap(heatmap);
+        cpu.run(1000);
+
+        assertEquals(1, heatmap.getPageReads()[0x00]);
+        assertEquals(1, heatmap.getPageWrites()[0x02]);
+        assertEquals(5, heatmap.getPageExecutes()[0x12]);
+
+        StringBuilder pages = new StringBuilder();
+        heatmap.writePages(pages);
+        assertTrue(pages.toString(), pages.toString().startsWith("page,reads,writes,executes\n00,1,0,0\n"));
+        assertTrue(pages.toString(), pages.toString().contains("\n02,0,1,0\n"));
+
+        StringBuilder grid = new StringBuilder();
+        heatmap.writeHeatmap(grid);
+        String[] lines = grid.toString().split("\n");
+        assertEquals(3 * 18 + 1, lines.length);
+        assertEquals("00   @*             ", lines[20]); // two pushes onto page 01, one store into page 02
+        assertEquals("max stack depth 2", lines[54]);
+    }
+
+    public void testDisablingRestoresBus() {
+        cpu.setHeatmap(heatmap);
+        assertNotSame(memory, cpu.bus);
+        cpu.setHeatmap(new MemoryHeatmap());
+        cpu.setHeatmap(null);
+        assertSame(memory, cpu.bus);
+
+        cpu.run(1000);
+        assertEquals(0, heatmap.getReads(0x0010));
+    }
+
+    public void testCodeCachesStillSeeWrites() {
+        cpu.setDispatch(CPU.Dispatch.PREDECODE);
+        cpu.setHeatmap(heatmap);
+        load(0x1234,
+                0xA9, 0x42, // LDA #nn
+                0x8D, 0x3A, 0x12, // STA nnnn into the operand of the next instruction
+                0xA2, 0x01, // LDX #nn
+                0x00); // unknown opcode
+        cpu.run(2);
+        cpu.pc = 0x1234;
+
+        cpu.run(1000);
+        assertEquals(0x42, cpu.x);
+    }
+
+    public void testClear() {
+        cpu.setHeatmap(heatmap);
+        cpu.run(1000);
+        heatmap.clear();
+
+        assertEquals(0, heatmap.getReads(0x0010));
+        assertEquals(0, heatmap.getMaxStackDepth());
+    }
+}
@@ -1,5 +1,8 @@
 package io.mundt.bender;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 public class MemoryTest extends TestCase {
@@ -24,4 +27,114 @@ public class MemoryTest extends TestCase {
         assertEquals(0x78, memory.readByte((short) 0x1234));
         assertEquals(0x56, memory.readByte((short) 0x1235));
     }
+
+    public void testWordWrapsAround() {
+        memory.writeWord(0xFFFF, 0x5678);
+        assertEquals(0x78, memory.readByte(0xFFFF));
+        assertEquals(0x56, memory.readByte(0x0000));
+        assertEquals(0x5678, memory.readWord(0xFFFF));
+    }
+
+    public void testRestoreCheckpoint() {
+        memory.writeByte(0x1234, 0x56);
+        Memory.Checkpoint checkpoint = memory.checkpoint();
+        memory.writeByte(0x1234, 0x78);
+        memory.writeByte(0x4321, 0x9A);
+        memory.load(0x12FF, new byte[]{0x11, 0x22}, 0, 2);
+
+        memory.restore(checkpoint);
+        assertEquals(0x56, memory.readByte(0x1234));
+        assertEquals(0x00, memory.readByte(0x4321));
+        assertEquals(0x00, memory.readByte(0x12FF));
+        assertEquals(0x00, memory.readByte(0x1300));
+
+        memory.writeByte(0x1234, 0x78);
+        memory.restore(checkpoint);
+        assertEquals(0x56, memory.readByte(0x1234)); // the checkpoint itself was not modified
+    }
+
+    public void testRestoreOlderCheckpoint() {
+        memory.writeByte(0x1234, 0x01);
+        Memory.Checkpoint first = memory.checkpoint();
+        memory.writeByte(0x1234, 0x02);
+        memory.writeByte(0x2000, 0x03);
+        Memory.Checkpoint second = memory.checkpoint();
+        memory.writeByte(0x2000, 0x04);
+
+        memory.restore(first);
+        assertEquals(0x01, memory.readByte(0x1234));
+        assertEquals(0x00, memory.readByte(0x2000));
+
+        memory.restore(second);
+        assertEquals(0x02, memory.readByte(0x1234));
+        assertEquals(0x03, memory.readByte(0x2000));
+    }
+
+    public void testDirtyPages() {
+        memory.writeByte(0x0100, 0x01);
+        assertFalse(memory.isPageDirty(0x01)); // not tracking yet
+
+        memory.setDirtyTracking(true);
+        memory.writeByte(0x1234, 0x01);
+        memory.writeWord(0xC0FF, 0x0203);
+        assertTrue(memory.isPageDirty(0x12));
+        assertTrue(memory.isPageDirty(0xC0));
+        assertTrue(memory.isPageDirty(0xC1));
+        assertFalse(memory.isPageDirty(0x13));
+        long[] dirty = memory.getDirtyPages();
+        assertEquals(1L << 0x12, dirty[0]);
+        assertEquals(0, dirty[1]);
+        assertEquals(3L << 0, dirty[3]);
+
+        memory.clearDirtyPages();
+        assertFalse(memory.isPageDirty(0x12));
+        memory.writeByte(0x1200, 0x01);
+        assertTrue(memory.isPageDirty(0x12));
+    }
+
+    public void testDirtyPagesWithCheckpoint() {
+        Memory.Checkpoint checkpoint = memory.checkpoint();
+        memory.writeByte(0x1234, 0x01);
+        memory.setDirtyTracking(true);
+        assertFalse(memory.isPageDirty(0x12));
+        memory.writeByte(0x1234, 0x02);
+        memory.writeByte(0x2000, 0x03);
+        assertTrue(memory.isPageDirty(0x12));
+
+        memory.setDirtyTracking(false);
+        memory.clearDirtyPages();
+        memory.restore(checkpoint);
+        assertEquals(0x00, memory.readByte(0x1234));
+        assertEquals(0x00, memory.readByte(0x2000));
+        assertFalse(memory.isPageDirty(0x12));
+    }
+
+    public void testWatchedPages() {
+        List<Integer> writes = new ArrayList<>();
+        memory.setWriteWatcher((address, length) -> writes.add(address));
+        memory.watchPage(0x12, true);
+
+        memory.writeByte(0x1234, 0x01);
+        memory.writeByte(0x1334, 0x02);
+        memory.writeByte(0x1235, 0x03);
+        assertEquals(List.of(0x1234, 0x1235), writes);
+        assertEquals(0x01, memory.readByte(0x1234));
+
+        memory.watchPage(0x12, false);
+        memory.writeByte(0x1236, 0x04);
+        assertEquals(2, writes.size());
+    }
+
+    public void testWatchedPagesWithCheckpoint() {
+        List<Integer> writes = new ArrayList<>();
+        memory.setWriteWatcher((address, length) -> writes.add(address));
+        memory.watchPage(0x12, true);
+
+        Memory.Checkpoint checkpoint = memory.checkpoint();
+        memory.writeByte(0x1234, 0x01);
+        memory.writeByte(0x1234, 0x02); // still watched after the page was saved
+        memory.restore(checkpoint);
+        assertEquals(List.of(0x1234, 0x1234, 0x1200), writes);
+        assertEquals(0x00, memory.readByte(0x1234));
+    }
 }
@@ -0,0 +1,194 @@
+package io.mundt.bender;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import io.mundt.bender.CPU.UnknownOpcodeException;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class MetricsTest extends CPUTestCase {
+    private Metrics metrics;
+
+    // Instructions seen by the metrics when the program last read 0x0010.
+    private long instructionsAtRead;
+
+    @Override
+    public void setUp() {
+        super.setUp();
+        metrics = new Metrics();
+        cpu.setMetrics(metrics);
+        load(0x1234,
+                0xA2, 0x03, // LDX #nn
+                0xCA, // DEX
+                0xD0, 0xFD, // BNE back to DEX
+                0x00); // unknown opcode
+    }
+
+    @Override
+    protected Bus createMemory() {
+        return new Memory() {
+            @Override
+            public int readByte(int address) {
+                if (address == 0x0010) {
+                    instructionsAtRead = metrics.getInstructions();
+                }
+                return super.readByte(address);
+            }
+        };
+    }
+
+    public void testCountsRun() {
+        cpu.run(1000);
+
+        assertEquals(cpu.cycles, metrics.getCycles());
+        assertEquals(1 + 3 + 3, metrics.getInstructions());
+        assertEquals(1, metrics.getIllegalOpcodeStops());
+        assertEquals(0, metrics.getInterrupts());
+    }
+
+    public void testCountsEverySlice() {
+        for (int i = 1; i <= 4; i++) {
+            cpu.scheduler.schedule(i, cycle -> { });
+        }
+        cpu.run(4);
+
+        assertEquals(cpu.cycles, metrics.getCycles());
+        assertEquals(2, metrics.getInstructions());
+        assertEquals(0, metrics.getIllegalOpcodeStops());
+    }
+
+    public void testPublishesDuringLongSlices() {
+        load(0x1234,
+                0xA5, 0x10, // LDA nn
+                0xD0, 0xFC); // BNE back to LDA nn
+        memory.writeByte(0x0010, 0x01);
+        cpu.run(4 * Metrics.PUBLISH_QUANTUM);
+
+        assertEquals(cpu.cycles, metrics.getCycles());
+        // At least the first three quanta, two instructions every six cycles, are in by the last read.
+        assertTrue(instructionsAtRead >= Metrics.PUBLISH_QUANTUM);
+    }
+
+    public void testCountsInterruptsApart() throws UnknownOpcodeException {
+        memory.writeWord(CPU.IRQ_VECTOR, 0x1236);
+        cpu.assertIrq(1);
+        cpu.step();
+        cpu.releaseIrq(1);
+        cpu.step();
+
+        assertEquals(7 + 2, metrics.getCycles());
+        assertEquals(1, metrics.getInstructions());
+        assertEquals(1, metrics.getInterrupts());
+    }
+
+    public void testCountsEveryDispatch() {
+        for (CPU.Dispatch dispatch : CPU.Dispatch.values()) {
+            setUp();
+            cpu.setDispatch(dispatch);
+            cpu.setFusion(true);
+            if (dispatch == CPU.Dispatch.RECOMPILE) {
+                cpu.setCompileThreshold(0);
+            }
+
+            cpu.run(1000);
+            assertEquals(dispatch.name(), cpu.cycles, metrics.getCycles());
+            assertEquals(dispatch.name(), 1 + 3 + 3, metrics.getInstructions());
+            assertEquals(dispatch.name(), 1, metrics.getIllegalOpcodeStops());
+        }
+    }
+
+    public void testCountsPageCrossPenaltiesInEveryDispatch() {
+        for (CPU.Dispatch dispatch : CPU.Dispatch.values()) {
+            setUp();
+            cpu.setDispatch(dispatch);
+            cpu.setFusion(true);
+            if (dispatch == CPU.Dispatch.RECOMPILE) {
+                cpu.setCompileThreshold(0);
+            }
+            cpu.pc = 0x12F0;
+            load(0x12F0,
+                    0xA2, 0x01, // LDX #nn
+                    0xBD, 0xFF, 0x12, // LDA nnnn,X crosses into page 13
+                    0x9D, 0xFF, 0x02, // STA nnnn,X, fused with LDA nnnn,X, takes no penalty
+                    0xBD, 0x00, 0x12, // LDA nnnn,X
+                    0xD0, 0x03); // BNE to 1300
+            load(0x1201, 0x01);
+            load(0x1300, 0x00); // unknown opcode
+
+            cpu.run(1000);
+            assertEquals(dispatch.name(), 2, metrics.getPageCrossPenalties());
+            assertEquals(dispatch.name(), 5, metrics.getInstructions());
+        }
+    }
+
+    public void testCountsBlocksAndPairsInStep() throws UnknownOpcodeException {
+        cpu.setCompileThreshold(0);
+        cpu.step(); // the block LDX #nn / DEX
+        assertEquals(2, metrics.getInstructions());
+
+        cpu.setDispatch(CPU.Dispatch.PREDECODE);
+        cpu.setFusion(true);
+        cpu.step(); // BNE nn
+        cpu.step(); // DEX / BNE nn
+        assertEquals(2 + 1 + 2, metrics.getInstructions());
+    }
+
+    public void testCountsSkippedIdleLoops() {
+        load(0x1234,
+                0xA5, 0x10, // LDA nn
+                0xD0, 0xFC); // BNE back to LDA nn
+        memory.writeByte(0x0010, 0x01);
+        cpu.setIdleLoopSkipping(true);
+        cpu.run(600);
+
+        assertEquals(600, cpu.cycles);
+        assertEquals(600 / 6 * 2, metrics.getInstructions());
+    }
+
+    public void testMBean() throws Exception {
+        metrics.register("test");
+        try {
+            cpu.run(1000);
+            ObjectName name = new ObjectName("io.mundt.bender:type=CPU,name=\"test\"");
+            assertEquals(cpu.cycles, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Cycles"));
+            assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "IllegalOpcodeStops"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().queryNames(
+                new ObjectName("io.mundt.bender:type=CPU,*"), null).iterator().hasNext());
+    }
+
+    public void testFlightRecorderEvent() throws Exception {
+        metrics.register("test");
+        Path file = Files.createTempFile("metrics", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(MetricsEvent.class).withPeriod(Duration.ofMillis(10));
+            recording.start();
+            cpu.run(1000);
+            Thread.sleep(200);
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            long cycles = 0;
+            for (RecordedEvent event : events) {
+                if (event.getEventType().getName().equals("io.mundt.bender.CPU")) {
+                    assertEquals("test", event.getString("name"));
+                    cycles += event.getLong("cycles");
+                }
+            }
+            assertEquals(cpu.cycles, cycles);
+        } finally {
+            metrics.unregister();
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io.mundt.bender;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class OffHeapMemoryTest extends TestCase {
+    private OffHeapMemory memory;
+
+    public void setUp() {
+        memory = new OffHeapMemory();
+    }
+
+    public void testReadWriteByte() {
+        memory.writeByte(0x12, 0x34);
+        assertEquals(0x34, memory.readByte(0x12));
+    }
+
+    public void testReadWriteWord() {
+        memory.writeWord(0x1234, 0x5678);
+        assertEquals(0x5678, memory.readWord(0x1234));
+    }
+
+    public void testLittleEndianness() {
+        memory.writeWord(0x1234, 0x5678);
+        assertEquals(0x78, memory.readByte(0x1234));
+        assertEquals(0x56, memory.readByte(0x1235));
+    }
+
+    public void testWordWrapsAround() {
+        memory.writeWord(0xFFFF, 0x5678);
+        assertEquals(0x78, memory.readByte(0xFFFF));
+        assertEquals(0x56, memory.readByte(0x0000));
+        assertEquals(0x5678, memory.readWord(0xFFFF));
+    }
+
+    public void testSharedBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(OffHeapMemory.SIZE);
+        OffHeapMemory shared = new OffHeapMemory(buffer);
+        shared.writeByte(0x1234, 0x56);
+        assertEquals(0x56, buffer.get(0x1234));
+    }
+
+    public void testIgnoresLimitOfSharedBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(OffHeapMemory.SIZE);
+        buffer.limit(0x100);
+        OffHeapMemory shared = new OffHeapMemory(buffer);
+        shared.writeByte(0xFFFF, 0x56);
+        assertEquals(0x56, shared.readByte(0xFFFF));
+        assertEquals(0x0056, shared.readWord(0xFFFF));
+    }
+
+    public void testWatchedPages() {
+        List<Integer> writes = new ArrayList<>();
+        memory.setWriteWatcher((address, length) -> writes.add(address));
+        memory.watchPage(0x12, true);
+
+        memory.writeByte(0x1234, 0x01);
+        memory.writeByte(0x1334, 0x02);
+        memory.writeWord(0x12FF, 0x0304);
+        memory.load(0x1100, new byte[0x200], 0, 0x200);
+        assertEquals(List.of(0x1234, 0x12FF, 0x1200), writes);
+        assertEquals(0x00, memory.readByte(0x1234));
+    }
+}
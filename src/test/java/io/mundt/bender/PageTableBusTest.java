@@ -0,0 +1,234 @@
+package io.mundt.bender;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class PageTableBusTest extends TestCase {
+    private PageTableBus bus;
+
+    public void setUp() {
+        bus = new PageTableBus();
+    }
+
+    public void testReadWriteRam() {
+        bus.writeByte(0x1234, 0x56);
+        assertEquals(0x56, bus.readByte(0x1234));
+    }
+
+    public void testReadWriteWordAcrossPages() {
+        bus.writeWord(0x12FF, 0x5678);
+        assertEquals(0x78, bus.readByte(0x12FF));
+        assertEquals(0x56, bus.readByte(0x1300));
+        assertEquals(0x5678, bus.readWord(0x12FF));
+    }
+
+    public void testRomIgnoresWrites() {
+        bus.mapRom(0xF0, new byte[]{0x12, 0x34});
+        bus.writeByte(0xF000, 0x56);
+        assertEquals(0x12, bus.readByte(0xF000));
+        assertEquals(0x34, bus.readByte(0xF001));
+    }
+
+    public void testDevice() {
+        int[] written = new int[2];
+        bus.mapDevice(0xD0, 1, new Device() {
+            @Override
+            public int readByte(int address) {
+                return address & 0xFF;
+            }
+
+            @Override
+            public void writeByte(int address, int value) {
+                written[0] = address;
+                written[1] = value;
+            }
+        });
+
+        assertEquals(0x42, bus.readByte(0xD042));
+        bus.writeByte(0xD012, 0x34);
+        assertEquals(0xD012, written[0]);
+        assertEquals(0x34, written[1]);
+        bus.writeByte(0xD112, 0x34);
+        assertEquals(0x34, bus.readByte(0xD112)); // next page is still RAM
+    }
+
+    public void testMirror() {
+        bus.mirror(0x00, 0x08, 0x08);
+        bus.writeByte(0x0812, 0x34);
+        assertEquals(0x34, bus.readByte(0x0012));
+    }
+
+    public void testMirroredBufferRom() {
+        byte[] image = new byte[2 * PageTableBus.PAGE_SIZE];
+        image[0x000] = 0x42;
+        image[0x101] = 0x43;
+
+        bus.mapRom(0xF0, ByteBuffer.wrap(image));
+        bus.mirror(0xF0, 0xE0, 2);
+        assertEquals(0x42, bus.readByte(0xE000));
+        assertEquals(0x43, bus.readByte(0xE101));
+
+        bus = new PageTableBus();
+        bus.mapRom(0xE0, ByteBuffer.wrap(image));
+        bus.mirror(0xE0, 0xF0, 2);
+        assertEquals(0x42, bus.readByte(0xF000));
+        assertEquals(0x43, bus.readByte(0xF101));
+    }
+
+    public void testRamBankSwitching() {
+        BankedStorage banks = new BankedStorage(0x2000, 64);
+        bus.mapBank(0x80, banks, 3, true);
+        bus.writeByte(0x8123, 0x45);
+        bus.mapBank(0x80, banks, 4, true);
+        assertEquals(0x00, bus.readByte(0x8123));
+        bus.writeByte(0x8123, 0x67);
+        bus.mapBank(0x80, banks, 3, true);
+        assertEquals(0x45, bus.readByte(0x8123));
+        assertEquals(0x67, banks.readByte(4, 0x0123));
+    }
+
+    public void testRomBankSwitching() {
+        BankedStorage banks = new BankedStorage(0x4000, 8);
+        banks.load(1, new byte[]{0x11});
+        banks.load(2, new byte[]{0x22});
+        bus.mapBank(0xC0, banks, 1, false);
+        bus.writeByte(0xC000, 0x33);
+        assertEquals(0x11, bus.readByte(0xC000));
+        bus.mapBank(0xC0, banks, 2, false);
+        assertEquals(0x22, bus.readByte(0xC000));
+    }
+
+    public void testCPUOnPageTableBus() throws CPU.UnknownOpcodeException {
+        bus.mapRom(0xF0, new byte[]{(byte) 0xA9, 0x42, (byte) 0x8D, 0x00, 0x02}); // LDA #$42, STA $0200
+        CPU cpu = new CPU(bus);
+        cpu.pc = (short) 0xF000;
+        assertEquals(2, cpu.step());
+        assertEquals(4, cpu.step());
+        assertEquals(0x42, bus.readByte(0x0200));
+    }
+
+    public void testWatchedPages() {
+        List<Integer> writes = new ArrayList<>();
+        bus.setWriteWatcher((address, length) -> writes.add(address));
+        bus.watchPage(0x12, true);
+
+        bus.writeByte(0x1234, 0x01);
+        bus.writeByte(0x1334, 0x02);
+        assertEquals(List.of(0x1234), writes);
+        assertEquals(0x01, bus.readByte(0x1234));
+
+        bus.watchPage(0x12, false);
+        bus.writeByte(0x1234, 0x03);
+        assertEquals(1, writes.size());
+        assertEquals(0x03, bus.readByte(0x1234));
+    }
+
+    public void testWatchedPagesThroughMirror() {
+        List<Integer> writes = new ArrayList<>();
+        bus.setWriteWatcher((address, length) -> writes.add(address));
+        bus.mirror(0x12, 0x22, 1);
+        bus.watchPage(0x12, true);
+
+        bus.writeByte(0x2234, 0x01);
+        assertEquals(List.of(0x1234), writes);
+        assertEquals(0x01, bus.readByte(0x1234));
+    }
+
+    public void testRemappingWatchedPage() {
+        List<Integer> writes = new ArrayList<>();
+        bus.setWriteWatcher((address, length) -> writes.add(address));
+        bus.watchPage(0x12, true);
+
+        bus.mapRom(0x12, new byte[]{0x12});
+        assertEquals(List.of(0x1200), writes);
+    }
+
+    public void testWatchedBankSwitching() {
+        List<Integer> writes = new ArrayList<>();
+        bus.setWriteWatcher((address, length) -> writes.add(address));
+        BankedStorage storage = new BankedStorage(0x400, 2);
+        bus.mapBank(0x40, storage, 0, true);
+        bus.mapBank(0x80, storage, 1, true);
+        bus.watchPage(0x41, true);
+
+        bus.mapBank(0x80, storage, 0, true);
+        writes.clear();
+        bus.writeByte(0x8134, 0x01);
+        assertEquals(List.of(0x4134), writes);
+
+        bus.mapBank(0x80, storage, 1, true);
+        writes.clear();
+        bus.writeByte(0x8134, 0x02);
+        assertEquals(List.of(), writes);
+        assertEquals(0x01, bus.readByte(0x4134));
+    }
+
+    /**
+     * Remaps, mirrors and watches pages at random and checks the reported writes against a model of which storage
+     * each page shows.
+     */
+    public void testWatchedPagesMatchModel() {
+        Random random = new Random(42);
+        BankedStorage storage = new BankedStorage(0x100, 64);
+        int[] readIds = new int[PageTableBus.PAGES];
+        int[] writeIds = new int[PageTableBus.PAGES];
+        boolean[] watched = new boolean[PageTableBus.PAGES];
+        int nextId = 1000;
+        for (int page = 0; page < PageTableBus.PAGES; page++) {
+            readIds[page] = writeIds[page] = nextId++;
+        }
+        List<Integer> writes = new ArrayList<>();
+        bus.setWriteWatcher((address, length) -> {
+            if (length == 1) {
+                writes.add(address >>> 8);
+            }
+        });
+        int[] pages = {0x10, 0x11, 0x12, 0x20, 0x21, 0x30};
+        for (int step = 0; step < 20000; step++) {
+            int page = pages[random.nextInt(pages.length)];
+            int other = pages[random.nextInt(pages.length)];
+            switch (random.nextInt(6)) {
+                case 0 -> {
+                    bus.mapRam(page, 1);
+                    readIds[page] = writeIds[page] = nextId++;
+                }
+                case 1 -> {
+                    bus.mapRom(page, new byte[1]);
+                    readIds[page] = nextId++;
+                    writeIds[page] = -1;
+                }
+                case 2 -> {
+                    int bank = random.nextInt(storage.getBankCount());
+                    boolean writable = random.nextBoolean();
+                    bus.mapBank(page, storage, bank, writable);
+                    readIds[page] = bank;
+                    writeIds[page] = writable ? bank : -1;
+                }
+                case 3 -> {
+                    bus.mirror(other, page, 1);
+                    readIds[page] = readIds[other];
+                    writeIds[page] = writeIds[other];
+                }
+                default -> {
+                    watched[page] = !watched[page];
+                    bus.watchPage(page, watched[page]);
+                }
+            }
+            writes.clear();
+            bus.writeByte(other << 8, 0);
+            List<Integer> expected = new ArrayList<>();
+            for (int candidate = 0; candidate < PageTableBus.PAGES; candidate++) {
+                if (watched[candidate] && (candidate == other
+                        || writeIds[other] != -1 && readIds[candidate] == writeIds[other])) {
+                    expected.add(candidate);
+                }
+            }
+            assertEquals("step " + step + " " + Arrays.toString(watched), expected, writes);
+        }
+    }
+}
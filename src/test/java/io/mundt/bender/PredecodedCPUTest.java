@@ -0,0 +1,51 @@
+package io.mundt.bender;
+
+import io.mundt.bender.CPU.UnknownOpcodeException;
+
+public class PredecodedCPUTest extends CPUTest {
+    @Override
+    protected CPU createCPU(Memory memory) {
+        CPU cpu = new CPU(memory);
+        cpu.setDispatch(CPU.Dispatch.PREDECODE);
+        return cpu;
+    }
+
+    public void testWriteToOperandIsSeen() throws UnknownOpcodeException {
+        Memory memory = new Memory();
+        CPU cpu = createCPU(memory);
+        memory.writeByte(0x1234, 0xAD); // LDA nnnn
+        memory.writeWord(0x1235, 0x2000); // nnnn = 0x2000
+        memory.writeByte(0x2000, 0x11);
+        memory.writeByte(0x2100, 0x22);
+
+        cpu.pc = 0x1234;
+        cpu.step();
+        assertEquals(0x11, cpu.a);
+
+        memory.writeByte(0x1236, 0x21);
+        cpu.pc = 0x1234;
+        cpu.step();
+        assertEquals(0x22, cpu.a);
+    }
+
+    public void testWriteToOpcodeIsSeen() throws UnknownOpcodeException {
+        Memory memory = new Memory();
+        CPU cpu = createCPU(memory);
+        memory.writeByte(0x12FF, 0xA9); // LDA #nn across a page boundary
+        memory.writeByte(0x1300, 0x42); // #nn = 0x42
+
+        cpu.pc = 0x12FF;
+        cpu.step();
+        assertEquals(0x42, cpu.a);
+
+        memory.writeByte(0x12FF, 0xA2); // LDX #nn
+        cpu.pc = 0x12FF;
+        cpu.step();
+        assertEquals(0x42, cpu.x);
+
+        memory.writeByte(0x1300, 0x43);
+        cpu.pc = 0x12FF;
+        cpu.step();
+        assertEquals(0x43, cpu.x);
+    }
+}
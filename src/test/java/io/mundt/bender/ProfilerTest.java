@@ -0,0 +1,106 @@
+package io.mundt.bender;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class ProfilerTest extends CPUTestCase {
+    private Profiler profiler;
+
+    @Override
+    public void setUp() {
+        super.setUp();
+        profiler = new Profiler();
+        cpu.setProfiler(profiler);
+        load(0x1234,
+                0xA2, 0x03, // LDX #nn
+                0xCA, // DEX
+                0xD0, 0xFD, // BNE back to DEX
+                0x00); // unknown opcode
+    }
+
+    public void testCountsByOpcodeAndAddress() {
+        cpu.run(1000);
+
+        long[] counts = profiler.getOpcodeCounts();
+        long[] cycles = profiler.getOpcodeCycles();
+        assertEquals(1, counts[0xA2]);
+        assertEquals(3, counts[0xCA]);
+        assertEquals(6, cycles[0xCA]);
+        assertEquals(3, counts[0xD0]);
+        assertEquals(3 + 3 + 2, cycles[0xD0]); // taken twice
+        assertEquals(0, counts[0x00]);
+        assertEquals(3, profiler.getCount(0x1236));
+        assertEquals(6, profiler.getCycles(0x1236));
+        assertEquals(cpu.cycles, profiler.getTotalCycles());
+    }
+
+    public void testCountsEachInstructionInEveryDispatch() {
+        for (CPU.Dispatch dispatch : CPU.Dispatch.values()) {
+            setUp();
+            cpu.setDispatch(dispatch);
+            cpu.setFusion(true);
+
+            cpu.run(1000);
+            assertEquals(dispatch.name(), 3, profiler.getCount(0x1236));
+            assertEquals(dispatch.name(), 3, profiler.getCount(0x1237));
+        }
+    }
+
+    public void testOverwrittenCodeKeepsItsOpcode() {
+        cpu.run(1000);
+        memory.writeByte(0x1236, 0xE8); // INX over DEX
+
+        assertEquals(3, profiler.getOpcodeCounts()[0xCA]);
+        assertEquals(0, profiler.getOpcodeCounts()[0xE8]);
+    }
+
+    public void testRerunOverwrittenCodeCountsUnderBothOpcodes() {
+        cpu.run(1000);
+        memory.writeByte(0x1236, 0xE8); // INX over DEX
+        cpu.pc = 0x1234;
+        cpu.run(10_000);
+
+        long[] counts = profiler.getOpcodeCounts();
+        long[] cycles = profiler.getOpcodeCycles();
+        assertEquals(3, counts[0xCA]);
+        assertEquals(6, cycles[0xCA]);
+        assertEquals(0x100 - 3, counts[0xE8]);
+        assertEquals(2 * (0x100 - 3), cycles[0xE8]);
+        assertEquals(3 + 0x100 - 3, profiler.getCount(0x1236));
+        assertEquals(cpu.cycles, profiler.getTotalCycles());
+    }
+
+    public void testStepIsCounted() throws CPU.UnknownOpcodeException {
+        cpu.step();
+        assertEquals(1, profiler.getCount(0x1234));
+    }
+
+    public void testReportIsSortedByCycles() throws IOException {
+        cpu.run(1000);
+        StringBuilder report = new StringBuilder();
+        profiler.report(report, 2);
+
+        String[] lines = report.toString().split("\n");
+        assertEquals(7, lines.length);
+        assertTrue(lines[1], lines[1].startsWith("D0 BNE nn"));
+        assertTrue(lines[2], lines[2].startsWith("CA DEX"));
+        assertTrue(lines[5], lines[5].startsWith("1237 BNE nn"));
+        assertTrue(lines[6], lines[6].startsWith("1236 DEX"));
+    }
+
+    public void testDumpHoldsAllCounters() throws IOException {
+        cpu.run(1000);
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        profiler.dump(dump);
+
+        assertEquals(4 + 2 * 0x100 * 8 + 0x10000 * (4 + 8), dump.size());
+    }
+
+    public void testClear() {
+        cpu.run(1000);
+        profiler.clear();
+
+        assertEquals(0, profiler.getTotalCycles());
+        assertEquals(0, profiler.getCount(0x1236));
+    }
+}
@@ -0,0 +1,10 @@
+package io.mundt.bender;
+
+public class RecompilerCPUTest extends CPUTest {
+    @Override
+    protected CPU createCPU(Memory memory) {
+        CPU cpu = new CPU(memory);
+        cpu.setCompileThreshold(0);
+        return cpu;
+    }
+}
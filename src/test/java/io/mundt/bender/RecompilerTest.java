@@ -0,0 +1,197 @@
+package io.mundt.bender;
+
+import io.mundt.bender.CPU.StopReason;
+import io.mundt.bender.CPU.UnknownOpcodeException;
+
+public class RecompilerTest extends CPUTestCase {
+    @Override
+    public void setUp() {
+        super.setUp();
+        cpu.setCompileThreshold(0);
+        cpu.pc = 0x1234;
+    }
+
+    public void testBlockRunsToFirstUnsupportedInstruction() throws UnknownOpcodeException {
+        load(0x1234,
+                0xA2, 0x03, // LDX #nn
+                0xBD, 0xFF, 0x20, // LDA nnnn,X (crosses a page)
+                0x9D, 0xFF, 0x20, // STA nnnn,X (no penalty for stores)
+                0x48, // PHA
+                0xA9, 0x00, // LDA #nn
+                0x68, // PLA
+                0x08, // PHP
+                0x28, // PLP
+                0x00); // unknown opcode ends the block
+        memory.writeByte(0x2102, 0x84);
+        cpu.sp = (byte) 0xFF;
+
+        assertEquals(2 + 5 + 5 + 3 + 2 + 4 + 3 + 4, cpu.step());
+        assertEquals(0x1242, cpu.pc);
+        assertEquals(0x84, cpu.a & 0xFF);
+        assertEquals(0x03, cpu.x);
+        assertEquals(0xFF, cpu.sp & 0xFF);
+        assertEquals(0x84, memory.readByte(0x2102));
+        assertFalse(cpu.isZero());
+        assertTrue(cpu.isNegative());
+        assertEquals(0x80, memory.readByte(0x01FF)); // PHP saw the N flag of PLA
+    }
+
+    public void testFlagsComeFromLastInstructionThatSetsThem() throws UnknownOpcodeException {
+        load(0x1234,
+                0xA9, 0x80, // LDA #nn
+                0xA2, 0x00, // LDX #nn
+                0x85, 0x10); // STA nn
+
+        cpu.step();
+        assertTrue(cpu.isZero());
+        assertFalse(cpu.isNegative());
+    }
+
+    public void testBlocksStayOnTheirPage() throws UnknownOpcodeException {
+        cpu.pc = 0x12FC;
+        load(0x12FC,
+                0xA9, 0x01, // LDA #nn
+                0xA9, 0x02, // LDA #nn
+                0xA9, 0x03); // LDA #nn on the next page
+
+        assertEquals(4, cpu.step());
+        assertEquals(0x1300, cpu.pc);
+        assertEquals(0x02, cpu.a);
+    }
+
+    public void testInterpretsUntilThresholdIsReached() throws UnknownOpcodeException {
+        cpu.setCompileThreshold(1);
+        load(0x1234,
+                0xA9, 0x01, // LDA #nn
+                0xA9, 0x02); // LDA #nn
+
+        assertEquals(2, cpu.step());
+        cpu.pc = 0x1234;
+        assertEquals(4, cpu.step());
+        assertEquals(0x1238, cpu.pc);
+    }
+
+    public void testPLPReplacesPendingFlags() throws UnknownOpcodeException {
+        load(0x1234,
+                0xA9, 0x00, // LDA #nn
+                0x68, // PLA pulls 0x80
+                0x28); // PLP pulls Z
+        memory.writeByte(0x01FE, 0x80);
+        memory.writeByte(0x01FF, CPU.ZERO_FLAG);
+        cpu.sp = (byte) 0xFD;
+
+        cpu.step();
+        assertEquals(0x80, cpu.a & 0xFF);
+        assertTrue(cpu.isZero());
+        assertFalse(cpu.isNegative());
+    }
+
+    public void testIllegalOpcode() {
+        memory.writeByte(0x1234, 0x00); // unknown opcode
+
+        assertEquals(StopReason.ILLEGAL_OPCODE, cpu.run(100));
+        assertEquals(0x1234, cpu.pc);
+    }
+
+    public void testLazyFlags() throws UnknownOpcodeException {
+        cpu.setLazyFlags(true);
+        load(0x1234,
+                0xA9, 0x00); // LDA #nn
+
+        cpu.step();
+        assertFalse(cpu.zero); // not computed yet
+        assertTrue(cpu.isZero());
+    }
+
+    public void testInvalidateCompiledCode() throws UnknownOpcodeException {
+        load(0x1234,
+                0xA9, 0x01); // LDA #nn
+        cpu.step();
+
+        memory.writeByte(0x1235, 0x02);
+        cpu.invalidateCompiledCode();
+        cpu.pc = 0x1234;
+        cpu.step();
+        assertEquals(0x02, cpu.a);
+    }
+
+    public void testWriteIntoBlockRecompilesIt() throws UnknownOpcodeException {
+        load(0x1234,
+                0xA9, 0x01, // LDA #nn
+                0xA2, 0x01); // LDX #nn
+        cpu.step();
+
+        memory.writeByte(0x1237, 0x02);
+        cpu.pc = 0x1234;
+        cpu.step();
+        assertEquals(0x02, cpu.x);
+    }
+
+    public void testBlockSeesItsOwnStore() throws UnknownOpcodeException {
+        load(0x1234,
+                0xA9, 0x42, // LDA #nn
+                0x8D, 0x3A, 0x12, // STA nnnn into the operand of the next instruction
+                0xA2, 0x01); // LDX #nn
+
+        cpu.step();
+        cpu.step();
+        assertEquals(0x42, cpu.x);
+    }
+
+    public void testStoresElsewhereKeepTheBlock() throws UnknownOpcodeException {
+        load(0x1234,
+                0xA9, 0x42, // LDA #nn
+                0x8D, 0x00, 0x20, // STA nnnn
+                0xA2, 0x01); // LDX #nn
+
+        assertEquals(8, cpu.step());
+        assertEquals(0x123B, cpu.pc);
+        assertEquals(0x42, memory.readByte(0x2000));
+    }
+
+    public void testBlockExitsWhenStoreSwitchesItsBank() {
+        PageTableBus bus = new PageTableBus();
+        BankedStorage banks = new BankedStorage(PageTableBus.PAGE_SIZE, 2);
+        bus.mapBank(0x80, banks, 0, false);
+        bus.mapDevice(0xD0, 1, new Device() {
+            @Override
+            public int readByte(int address) {
+                return 0;
+            }
+
+            @Override
+            public void writeByte(int address, int value) {
+                bus.mapBank(0x80, banks, value, false);
+            }
+        });
+        for (int bank = 0; bank < 2; bank++) {
+            banks.load(bank, new byte[]{
+                    (byte) 0xA9, 0x01, // LDA #nn
+                    (byte) 0x8D, 0x00, (byte) 0xD0, // STA nnnn switches to bank 1
+                    (byte) 0xA2, (byte) (bank == 0 ? 0x11 : 0x22), // LDX #nn
+                    0x00}); // unknown opcode
+        }
+        CPU cpu = new CPU(bus);
+        cpu.setCompileThreshold(0);
+        cpu.pc = (short) 0x8000;
+
+        assertEquals(StopReason.ILLEGAL_OPCODE, cpu.run(1000));
+        assertEquals(0x22, cpu.x);
+        assertEquals(0x8007, cpu.pc & 0xFFFF);
+        assertEquals(2 + 4 + 2, cpu.cycles);
+    }
+
+    public void testRestoringSnapshotRecompiles() throws UnknownOpcodeException {
+        load(0x1234,
+                0xA9, 0x01); // LDA #nn
+        Memory memory = (Memory) this.memory;
+        Snapshot snapshot = Snapshot.take(cpu, memory);
+        memory.writeByte(0x1235, 0x02);
+        cpu.step();
+        assertEquals(0x02, cpu.a);
+
+        snapshot.restore(cpu, memory);
+        cpu.step();
+        assertEquals(0x01, cpu.a);
+    }
+}
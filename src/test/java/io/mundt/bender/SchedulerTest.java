@@ -0,0 +1,131 @@
+package io.mundt.bender;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SchedulerTest extends CPUTestCase {
+    private Scheduler scheduler;
+
+    private List<String> fired;
+
+    @Override
+    public void setUp() {
+        super.setUp();
+        scheduler = cpu.scheduler;
+        fired = new ArrayList<>();
+        cpu.pc = 0x1234;
+    }
+
+    public void testEventsFireInCycleOrder() {
+        for (int cycle : new int[]{50, 10, 40, 20, 30, 60, 5, 45, 15, 35, 25, 55, 1, 70, 65, 3, 2, 80}) {
+            scheduler.schedule(cycle, c -> fired.add(Long.toString(c)));
+        }
+
+        scheduler.fireDue(100);
+        assertEquals(List.of("1", "2", "3", "5", "10", "15", "20", "25", "30", "35", "40", "45", "50", "55", "60",
+                "65", "70", "80"), fired);
+        assertTrue(scheduler.isEmpty());
+    }
+
+    public void testEventsAtTheSameCycleFireInSchedulingOrder() {
+        for (int i = 0; i < 20; i++) {
+            String name = Integer.toString(i);
+            scheduler.schedule(10, c -> fired.add(name));
+        }
+
+        scheduler.fireDue(10);
+        assertEquals(20, fired.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Integer.toString(i), fired.get(i));
+        }
+    }
+
+    public void testOnlyDueEventsFire() {
+        scheduler.schedule(10, c -> fired.add("early"));
+        scheduler.schedule(20, c -> fired.add("late"));
+
+        scheduler.fireDue(15);
+        assertEquals(List.of("early"), fired);
+        assertEquals(20, scheduler.nextDeadline());
+    }
+
+    public void testCancel() {
+        Scheduler.Event cancelled = c -> fired.add("cancelled");
+        scheduler.schedule(10, cancelled);
+        scheduler.schedule(20, c -> fired.add("kept"));
+        scheduler.schedule(30, cancelled);
+
+        assertTrue(scheduler.cancel(cancelled));
+        assertFalse(scheduler.cancel(cancelled));
+        scheduler.fireDue(100);
+        assertEquals(List.of("kept"), fired);
+    }
+
+    public void testEmptySchedulerHasNoDeadline() {
+        assertTrue(scheduler.isEmpty());
+        assertEquals(Long.MAX_VALUE, scheduler.nextDeadline());
+    }
+
+    public void testStepCountsCycles() throws CPU.UnknownOpcodeException {
+        load(0x1234,
+                0xA9, 0x01, // LDA #nn
+                0xA5, 0x10); // LDA nn
+
+        cpu.step();
+        cpu.step();
+        assertEquals(2 + 3, cpu.cycles);
+    }
+
+    public void testStepFiresDueEvents() throws CPU.UnknownOpcodeException {
+        load(0x1234,
+                0xA9, 0x01, // LDA #nn
+                0xA9, 0x02); // LDA #nn
+        scheduler.schedule(2, c -> fired.add("at " + cpu.pc));
+
+        cpu.step();
+        assertTrue(fired.isEmpty());
+        cpu.step();
+        assertEquals(List.of("at " + 0x1236), fired);
+    }
+
+    public void testRunFiresEventsBetweenInstructions() {
+        for (int address = 0x1234; address < 0x1334; address += 2) {
+            memory.writeByte(address, 0xA9); // LDA #nn
+        }
+        scheduler.schedule(5, c -> fired.add(c + " at " + cpu.cycles));
+        scheduler.schedule(10, c -> fired.add(c + " at " + cpu.cycles));
+
+        cpu.run(20);
+        assertEquals(List.of("5 at 6", "10 at 10"), fired);
+        assertEquals(20, cpu.cycles);
+    }
+
+    public void testPeriodicEvent() {
+        for (int address = 0x1234; address < 0x1334; address += 2) {
+            memory.writeByte(address, 0xA9); // LDA #nn
+        }
+        scheduler.schedule(10, new Scheduler.Event() {
+            @Override
+            public void fire(long cycle) {
+                fired.add(Long.toString(cycle));
+                scheduler.schedule(cycle + 10, this);
+            }
+        });
+
+        cpu.run(45);
+        assertEquals(List.of("10", "20", "30", "40"), fired);
+    }
+
+    public void testIdleLoopRunsToNextEvent() {
+        load(0x1234,
+                0xA5, 0x10, // LDA nn
+                0xF0, 0xFC); // BEQ back to LDA
+        cpu.setIdleLoopSkipping(true);
+        scheduler.schedule(1_000_000, c -> memory.writeByte(0x10, 1));
+
+        cpu.run(2_000_000);
+        assertEquals(0x1238, cpu.pc); // left the loop, ran into the unknown opcode behind it
+        assertTrue(cpu.cycles >= 1_000_000);
+        assertTrue(cpu.cycles < 1_000_000 + 20);
+    }
+}
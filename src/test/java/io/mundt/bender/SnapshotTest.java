@@ -0,0 +1,99 @@
+package io.mundt.bender;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class SnapshotTest extends TestCase {
+    private Memory memory;
+
+    private CPU cpu;
+
+    public void setUp() {
+        memory = new Memory();
+        cpu = new CPU(memory);
+    }
+
+    public void testRestore() {
+        cpu.pc = 0x1234;
+        cpu.sp = (byte) 0xF0;
+        cpu.a = 0x11;
+        cpu.x = 0x22;
+        cpu.y = 0x33;
+        cpu.setStatus(0xC3);
+        cpu.cycles = 1000;
+        memory.writeByte(0x0200, 0x44);
+
+        Snapshot snapshot = Snapshot.take(cpu, memory);
+        cpu.reset();
+        cpu.cycles = 2000;
+        memory.writeByte(0x0200, 0x55);
+        snapshot.restore(cpu, memory);
+
+        assertEquals(0x1234, cpu.pc);
+        assertEquals(0xF0, cpu.sp & 0xFF);
+        assertEquals(0x11, cpu.a);
+        assertEquals(0x22, cpu.x);
+        assertEquals(0x33, cpu.y);
+        assertEquals(0xC3, cpu.getStatus());
+        assertEquals(1000, cpu.cycles);
+        assertEquals(0x44, memory.readByte(0x0200));
+    }
+
+    public void testRewindAfterRun() {
+        memory.writeByte(0x1234, 0xA9); // LDA #nn
+        memory.writeByte(0x1235, 0x42); // #nn = 0x42
+        memory.writeByte(0x1236, 0x85); // STA nn
+        memory.writeByte(0x1237, 0x10); // nn = 0x10
+        cpu.pc = 0x1234;
+        cpu.setLazyFlags(true);
+
+        Snapshot snapshot = Snapshot.take(cpu, memory);
+        assertEquals(CPU.StopReason.ILLEGAL_OPCODE, cpu.run(100));
+        assertEquals(0x42, memory.readByte(0x0010));
+
+        snapshot.restore(cpu, memory);
+        assertEquals(0x1234, cpu.pc);
+        assertEquals(0, cpu.a);
+        assertEquals(0, memory.readByte(0x0010));
+        assertEquals(0, cpu.cycles);
+    }
+
+    public void testRestoresSchedulerAndDevices() {
+        for (int address = 0x1234; address < 0x1334; address++) {
+            memory.writeByte(address, 0xA9); // LDA #nn
+        }
+        cpu.pc = 0x1234;
+        List<Long> fired = new ArrayList<>();
+        cpu.scheduler.schedule(50, fired::add);
+        long[] caughtUp = new long[1];
+        CatchUpDevice device = new CatchUpDevice(cpu) {
+            @Override
+            protected void catchUp(long cycles) {
+                caughtUp[0] += cycles;
+            }
+
+            @Override
+            protected int read(int address) {
+                return 0;
+            }
+
+            @Override
+            protected void write(int address, int value) {
+            }
+        };
+
+        Snapshot snapshot = Snapshot.take(cpu, memory);
+        cpu.run(100);
+        device.sync();
+        snapshot.restore(cpu, memory);
+        assertEquals(0, device.getSyncedCycle());
+
+        cpu.run(100);
+        device.sync();
+        assertEquals(List.of(50L, 50L), fired);
+        assertEquals(100, device.getSyncedCycle());
+        assertEquals(200, caughtUp[0]);
+    }
+}
@@ -0,0 +1,10 @@
+package io.mundt.bender;
+
+public class TableDispatchCPUTest extends CPUTest {
+    @Override
+    protected CPU createCPU(Memory memory) {
+        CPU cpu = new CPU(memory);
+        cpu.setDispatch(CPU.Dispatch.TABLE);
+        return cpu;
+    }
+}